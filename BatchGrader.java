@@ -0,0 +1,328 @@
+/* BatchGrader.java
+   Headless grading of a whole roster: one CSV per student, graded on a fork/join pool.
+   Usage: java grading batch <roster-dir> [--format csv|json] [--out <file>] [--threads <n>] [--weights <file>]
+                             [--stats <file>]
+*/
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Computes the category-weighted final grade and letter for every (student, subject)
+ * in a directory of per-student gradebooks. Each file is in the usual
+ * Name,Subject,Category,Score,OutOf,Date format and the student id is the file name
+ * without ".csv". Results are streamed to CSV or JSON as students finish.
+ *
+ * With --stats, each worker thread also folds its students' scores and final grades
+ * into its own {@link GradeStatistics}; they are merged once grading is done and the
+ * class-wide distributions written as CSV.
+ */
+final class BatchGrader {
+
+    // Students per fork/join leaf
+    private static final int LEAF_SIZE = 4;
+
+    private final List<Path> files;
+    private final WeightConfig weights;
+    private final ResultWriter out;
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder students = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // One partial per worker thread, or null without --stats
+    private final ConcurrentHashMap<Thread, GradeStatistics> statistics;
+
+    private BatchGrader(List<Path> files, WeightConfig weights, ResultWriter out, boolean statistics) {
+        this.files = files;
+        this.weights = weights;
+        this.out = out;
+        this.statistics = statistics ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Entry point for "grading batch ...". Returns the process exit code.
+     */
+    static int run(String[] args) {
+        Path dir = null;
+        String format = "csv";
+        Path outFile = null;
+        Path weightsFile = null;
+        Path statsFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--format" -> format = args[++i].toLowerCase(Locale.ROOT);
+                    case "--out" -> outFile = Path.of(args[++i]);
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--weights" -> weightsFile = Path.of(args[++i]);
+                    case "--stats" -> statsFile = Path.of(args[++i]);
+                    default -> {
+                        // An unknown option or a second directory is a mistake, not the roster
+                        if (args[i].startsWith("--") || dir != null) throw new IllegalArgumentException(args[i]);
+                        dir = Path.of(args[i]);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            dir = null;
+        }
+        if (dir == null || !Files.isDirectory(dir) || threads < 1 || !(format.equals("csv") || format.equals("json"))) {
+            System.err.println("Usage: java grading batch <roster-dir> [--format csv|json] [--out <file>] [--threads <n>] [--weights <file>] [--stats <file>]");
+            return 2;
+        }
+
+        try {
+            WeightConfig weights = weightsFile == null ? WeightConfig.defaults() : WeightConfig.load(weightsFile);
+            List<Path> files = listGradebooks(dir);
+            Writer sink = outFile == null
+                    ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                    : Files.newBufferedWriter(outFile, StandardCharsets.UTF_8);
+            try (ResultWriter writer = format.equals("json") ? new JsonResultWriter(sink) : new CsvResultWriter(sink)) {
+                BatchGrader grader = new BatchGrader(files, weights, writer, statsFile != null);
+                long start = System.nanoTime();
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    pool.invoke(grader.new GradeFiles(0, files.size()));
+                } finally {
+                    pool.shutdown();
+                }
+                grader.report(System.nanoTime() - start);
+                if (statsFile != null) grader.writeStatistics(statsFile);
+                return grader.failed.sum() == 0 ? 0 : 1;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Batch grading failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    static List<Path> listGradebooks(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.csv")) {
+            for (Path p : stream) {
+                if (Files.isRegularFile(p)) files.add(p);
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    static String studentId(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".csv") ? name.substring(0, name.length() - 4) : name;
+    }
+
+    /**
+     * Splits the file list in half until a range is small enough to grade directly.
+     */
+    private class GradeFiles extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        GradeFiles(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    gradeStudent(files.get(i));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new GradeFiles(from, mid), new GradeFiles(mid, to));
+        }
+    }
+
+    private void gradeStudent(Path file) {
+        String student = studentId(file);
+        CsvGradeLoader.LoadResult result;
+        try {
+            result = CsvGradeLoader.load(file);
+        } catch (IOException e) {
+            System.err.println("Skipping " + file + ": " + e.getMessage());
+            failed.increment();
+            return;
+        }
+
+        GradeStore store = result.store;
+        List<SubjectSummary> summaries = new ArrayList<>(store.subjectCount());
+        for (GradeStore.SubjectGrades grades : store.subjects()) {
+            summaries.add(SubjectSummary.of(grades, weights.forSubject(grades.subject).compile(store)));
+        }
+        out.write(student, summaries);
+        if (statistics != null) addStatistics(store, summaries);
+
+        rows.add(result.rowsLoaded);
+        skipped.add(result.rowsSkipped);
+        students.increment();
+    }
+
+    /**
+     * Adds one student's scores and final grades to the calling worker's partial statistics.
+     */
+    private void addStatistics(GradeStore store, List<SubjectSummary> summaries) {
+        // Only this thread touches its partial until grading is done
+        GradeStatistics partial = statistics.computeIfAbsent(Thread.currentThread(), t -> new GradeStatistics());
+        String[] categoryNames = new String[store.categoryCount()];
+        for (int i = 0; i < categoryNames.length; i++) {
+            categoryNames[i] = store.categoryName(i);
+        }
+        for (GradeStore.SubjectGrades grades : store.subjects()) {
+            partial.addRows(grades.columns(), categoryNames, 0, grades.size());
+        }
+        for (SubjectSummary summary : summaries) {
+            if (summary.totalCategoryWeightUsed > 0) partial.addFinalGrade(summary.subject, summary.finalGrade);
+        }
+    }
+
+    private void writeStatistics(Path file) throws IOException {
+        GradeStatistics merged = new GradeStatistics();
+        for (GradeStatistics partial : statistics.values()) {
+            merged.merge(partial);
+        }
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            merged.writeCsv(w);
+        }
+        System.err.println("Wrote class statistics to " + file);
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        System.err.printf(Locale.ROOT, "Graded %d student(s), %d row(s) (%d skipped) in %.3f s: %.0f rows/s, %.1f students/s%n",
+                students.sum(), rows.sum(), skipped.sum(), seconds,
+                rows.sum() / seconds, students.sum() / seconds);
+        if (failed.sum() > 0) {
+            System.err.println(failed.sum() + " gradebook(s) could not be read.");
+        }
+    }
+
+    // ---------------- Output ----------------
+
+    /**
+     * Receives one student's results at a time from any worker thread.
+     */
+    private abstract static class ResultWriter implements AutoCloseable {
+        protected final Writer out;
+        private final StringBuilder sb = new StringBuilder(256);
+
+        ResultWriter(Writer out) {
+            this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+        }
+
+        synchronized void write(String student, List<SubjectSummary> summaries) {
+            sb.setLength(0);
+            for (SubjectSummary summary : summaries) {
+                appendRow(sb, student, summary);
+            }
+            try {
+                out.append(sb);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        abstract void appendRow(StringBuilder sb, String student, SubjectSummary summary);
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static class CsvResultWriter extends ResultWriter {
+        CsvResultWriter(Writer out) throws IOException {
+            super(out);
+            this.out.write("Student,Subject,WeightUsed,FinalGrade,Letter\n");
+        }
+
+        @Override
+        void appendRow(StringBuilder sb, String student, SubjectSummary summary) {
+            sb.append(csvField(student)).append(',')
+                    .append(csvField(summary.subject)).append(',')
+                    .append(String.format(Locale.ROOT, "%.2f,%.2f,", summary.totalCategoryWeightUsed, summary.finalGrade))
+                    .append(summary.letterGrade).append('\n');
+        }
+    }
+
+    private static class JsonResultWriter extends ResultWriter {
+        private boolean first = true;
+
+        JsonResultWriter(Writer out) throws IOException {
+            super(out);
+            this.out.write("[\n");
+        }
+
+        @Override
+        void appendRow(StringBuilder sb, String student, SubjectSummary summary) {
+            sb.append(first ? "  " : ",\n  ");
+            first = false;
+            sb.append("{\"student\":");
+            appendJsonString(sb, student);
+            sb.append(",\"subject\":");
+            appendJsonString(sb, summary.subject);
+            sb.append(String.format(Locale.ROOT, ",\"weightUsed\":%.2f,\"finalGrade\":%.2f,\"letter\":",
+                    summary.totalCategoryWeightUsed, summary.finalGrade));
+            appendJsonString(sb, summary.letterGrade);
+            sb.append('}');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.write(first ? "]\n" : "\n]\n");
+            super.close();
+        }
+    }
+
+    /**
+     * s as one CSV field, quoted only when it contains a comma, quote or newline.
+     */
+    static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Appends s as a quoted JSON string.
+     */
+    static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
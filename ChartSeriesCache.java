@@ -0,0 +1,284 @@
+/* ChartSeriesCache.java
+   Per-subject, date-sorted chart series with a running weighted-grade trend and LTTB downsampling.
+*/
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps each subject's progress series sorted by date so the chart does not re-sort
+ * (or re-parse dates) on every open. Next to each assignment's own percentage the
+ * series holds the trend: the category-weighted final grade as it stood after that
+ * assignment, computed in one pass with running per-category sums.
+ *
+ * When a subject only gained grades dated on or after its latest point (the normal
+ * case) the series is extended in place, one point per new grade; anything else
+ * rebuilds it. Large series are reduced to roughly one point per pixel with
+ * Largest-Triangle-Three-Buckets, which keeps peaks and dips visible.
+ */
+final class ChartSeriesCache {
+
+    private GradeStore store;
+    private final Map<String, Series> bySubject = new HashMap<>();
+
+    /**
+     * A subject's grades in chronological order.
+     */
+    static final class Series {
+        private final GradeStore store;
+        final WeightScheme scheme;
+        private long version;
+        private GradeStore.SubjectGrades.Columns columns;
+        private int size;
+        // Store row of each point, oldest first
+        private int[] rows;
+        // Score percentage (0-100) of each point
+        private double[] percents;
+        // Weighted final grade (0-100) after each point, NaN before the first weighted grade
+        private double[] trend;
+        private String[] labels;
+        private final Trend running;
+
+        private Series(GradeStore store, GradeStore.SubjectGrades grades, WeightScheme.Plan plan) {
+            this.store = store;
+            this.scheme = plan.scheme;
+            this.running = new Trend(plan);
+            this.rows = grades.rowsByDate();
+            int n = rows.length;
+            this.percents = new double[n];
+            this.trend = new double[n];
+            this.labels = new String[n];
+            this.columns = grades.columns();
+            this.version = grades.version();
+            appendPoints(0, n, plan);
+        }
+
+        /**
+         * Appends the subject's new rows if they all sort after the current last point.
+         * Returns false (leaving the series untouched) if a rebuild is needed instead.
+         */
+        private boolean extend(GradeStore.SubjectGrades grades, WeightScheme.Plan plan) {
+            if (grades.version() == version) return true;
+            int from = size;
+            int to = grades.size();
+            if (to < from) return false;
+
+            int lastDay = size == 0 ? Integer.MIN_VALUE : columns.epochDays[rows[size - 1]];
+            long[] keys = new long[to - from];
+            for (int row = from; row < to; row++) {
+                int day = grades.epochDay(row);
+                if (day < lastDay) return false;
+                keys[row - from] = ((long) day << 32) | row;
+            }
+            Arrays.sort(keys);
+
+            if (rows.length < to) {
+                int capacity = Math.max(to, rows.length + (rows.length >> 1));
+                rows = Arrays.copyOf(rows, capacity);
+                percents = Arrays.copyOf(percents, capacity);
+                trend = Arrays.copyOf(trend, capacity);
+                labels = Arrays.copyOf(labels, capacity);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                rows[from + i] = (int) keys[i];
+            }
+            columns = grades.columns();
+            version = grades.version();
+            appendPoints(from, to, plan);
+            return true;
+        }
+
+        private void appendPoints(int from, int to, WeightScheme.Plan plan) {
+            for (int i = from; i < to; i++) {
+                int row = rows[i];
+                double fraction = (double) columns.scores[row] / columns.outOfs[row];
+                percents[i] = fraction * 100.0;
+                trend[i] = running.add(plan.slot(columns.categoryIds[row]), fraction);
+            }
+            size = to;
+        }
+
+        long version() {
+            return version;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** Point percentages; only the first size() entries are valid. */
+        double[] percents() {
+            return percents;
+        }
+
+        double percent(int point) {
+            return percents[point];
+        }
+
+        double trend(int point) {
+            return trend[point];
+        }
+
+        int epochDay(int point) {
+            return columns.epochDays[rows[point]];
+        }
+
+        /**
+         * "Assignment Name (YYYY-MM-DD)" for the point, built once and kept.
+         */
+        String label(int point) {
+            String label = labels[point];
+            if (label == null) {
+                int row = rows[point];
+                label = store.assignmentName(columns.nameIds[row]) + " (" + GradeStore.isoDate(columns.epochDays[row]) + ")";
+                labels[point] = label;
+            }
+            return label;
+        }
+    }
+
+    /**
+     * Running per-category count and sum (the prefix sums up to the current point) and
+     * the weighted total derived from them, updated in O(1) per grade (plus the drop
+     * count for categories that drop their lowest scores).
+     */
+    private static final class Trend {
+        private final double[] weights;
+        private final int[] counts;
+        private final double[] sums;
+        // Lowest score fractions per slot, ascending, for drop-lowest categories
+        private final double[][] lowest;
+        private final double[] lowestSums;
+        private double weighted;
+        private double weightUsed;
+
+        Trend(WeightScheme.Plan plan) {
+            int n = plan.slots();
+            this.weights = plan.scheme.weights;
+            this.counts = new int[n];
+            this.sums = new double[n];
+            this.lowest = new double[n][];
+            this.lowestSums = new double[n];
+            for (int c = 0; c < n; c++) {
+                lowest[c] = new double[plan.scheme.dropLowest[c]];
+            }
+        }
+
+        /**
+         * Adds a grade in slot (-1 if unweighted) and returns the final grade after it.
+         */
+        double add(int slot, double fraction) {
+            if (slot >= 0) {
+                if (counts[slot] > 0) {
+                    weighted -= weights[slot] * average(slot);
+                } else {
+                    weightUsed += weights[slot];
+                }
+                double[] low = lowest[slot];
+                if (low.length > 0) {
+                    int kept = Math.min(counts[slot], low.length);
+                    if (kept < low.length || fraction < low[kept - 1]) {
+                        int j = kept < low.length ? kept : kept - 1;
+                        if (kept == low.length) lowestSums[slot] -= low[j];
+                        while (j > 0 && low[j - 1] > fraction) {
+                            low[j] = low[j - 1];
+                            j--;
+                        }
+                        low[j] = fraction;
+                        lowestSums[slot] += fraction;
+                    }
+                }
+                counts[slot]++;
+                sums[slot] += fraction;
+                weighted += weights[slot] * average(slot);
+            }
+            return weightUsed > 0 ? weighted / weightUsed * 100.0 : Double.NaN;
+        }
+
+        /** Average after dropping, matching {@link SubjectSummary}. */
+        private double average(int slot) {
+            int count = counts[slot];
+            int dropped = Math.min(lowest[slot].length, count - 1);
+            if (dropped <= 0) return sums[slot] / count;
+            double droppedSum = lowestSums[slot];
+            // lowestSums covers min(count, drop) scores; the highest of them is kept when count <= drop
+            if (dropped < Math.min(count, lowest[slot].length)) {
+                droppedSum -= lowest[slot][dropped];
+            }
+            return (sums[slot] - droppedSum) / (count - dropped);
+        }
+    }
+
+    /**
+     * Returns the cached series for the subject under plan's scheme, extending or
+     * rebuilding it if the subject changed. Call on the thread that owns the store.
+     */
+    Series get(GradeStore store, GradeStore.SubjectGrades grades, WeightScheme.Plan plan) {
+        if (store != this.store) {
+            bySubject.clear();
+            this.store = store;
+        }
+        Series series = bySubject.get(grades.subject);
+        if (series == null || !series.scheme.sameRules(plan.scheme) || !series.extend(grades, plan)) {
+            series = new Series(store, grades, plan);
+            bySubject.put(grades.subject, series);
+        }
+        return series;
+    }
+
+    /**
+     * Picks at most threshold point indexes from the first n values of y using
+     * Largest-Triangle-Three-Buckets, with x taken as the point index. The first and
+     * last points are always kept.
+     */
+    static int[] downsample(double[] y, int n, int threshold) {
+        if (threshold >= n || threshold < 3) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+            return all;
+        }
+
+        int[] picked = new int[threshold];
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        picked[0] = 0;
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // Average of the next bucket is the third triangle vertex
+            int nextStart = (int) Math.floor((i + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((i + 2) * bucketSize) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += j;
+                avgY += y[j];
+            }
+            int nextCount = nextEnd - nextStart;
+            if (nextCount > 0) {
+                avgX /= nextCount;
+                avgY /= nextCount;
+            } else {
+                avgX = n - 1;
+                avgY = y[n - 1];
+            }
+
+            // Keep the point of this bucket that forms the largest triangle with a and the average
+            int start = (int) Math.floor(i * bucketSize) + 1;
+            int end = (int) Math.floor((i + 1) * bucketSize) + 1;
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((a - avgX) * (y[j] - y[a]) - (a - j) * (avgY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = j;
+                }
+            }
+            picked[i + 1] = maxIndex;
+            a = maxIndex;
+        }
+        picked[threshold - 1] = n - 1;
+        return picked;
+    }
+}
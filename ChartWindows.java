@@ -0,0 +1,199 @@
+/* ChartWindows.java
+   The progress chart windows, kept out of grading so JFreeChart loads on the first chart rather than at startup.
+*/
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.JFrame;
+
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.category.DefaultCategoryDataset;
+
+/**
+ * One chart window per subject, created on first view and hidden (not disposed) when
+ * closed. The main window only refers to this class once a chart is requested, so
+ * none of JFreeChart is loaded on the way to the first frame; {@link #prewarm} loads
+ * it in the background once the main window is up. Everything except prewarm() is
+ * EDT-only.
+ */
+final class ChartWindows {
+
+    // Sorted per-subject series, rebuilt only when that subject changes
+    private static final ChartSeriesCache chartSeries = new ChartSeriesCache();
+    // Open (or hidden) chart windows by subject, reused on the next "View Progress Chart"
+    private static final Map<String, ChartWindow> chartWindows = new HashMap<>();
+
+    private ChartWindows() {
+    }
+
+    /**
+     * A chart window together with its dataset and the series version it shows.
+     */
+    private static class ChartWindow {
+        final JFrame frame;
+        final JFreeChart chart;
+        final ChartPanel panel;
+        final DefaultCategoryDataset dataset;
+        ChartSeriesCache.Series shown;
+        long shownVersion;
+        // Points in the dataset, and whether they are every point of the series
+        int shownPoints;
+        boolean shownAll;
+        int sampledWidth;
+
+        ChartWindow(JFrame frame, JFreeChart chart, ChartPanel panel, DefaultCategoryDataset dataset) {
+            this.frame = frame;
+            this.chart = chart;
+            this.panel = panel;
+            this.dataset = dataset;
+        }
+    }
+
+    /**
+     * Shows the subject's chart, creating its window on first use. The subject must have grades.
+     */
+    static void show(GradeStore store, WeightConfig weights, String subject, Component parent) {
+        ChartWindow window = chartWindows.get(subject);
+        if (window == null) {
+            window = createChartWindow(subject);
+            chartWindows.put(subject, window);
+        }
+        refreshChart(store, weights, subject, window);
+
+        if (!window.frame.isVisible()) {
+            window.frame.setLocationRelativeTo(parent);
+            window.frame.setVisible(true);
+        }
+        window.frame.toFront();
+    }
+
+    /**
+     * Updates the subject's chart if its window is open. The subject must have grades.
+     */
+    static void refreshIfOpen(GradeStore store, WeightConfig weights, String subject) {
+        ChartWindow window = chartWindows.get(subject);
+        if (window != null && window.frame.isVisible()) {
+            refreshChart(store, weights, subject, window);
+        }
+    }
+
+    /** Subjects that have a chart window, open or hidden. */
+    static List<String> subjects() {
+        return new ArrayList<>(chartWindows.keySet());
+    }
+
+    /**
+     * Brings the window up to date with the subject's grades. Grades dated after the
+     * last point only append to the series (and to the dataset, when it is not sampled).
+     */
+    private static void refreshChart(GradeStore store, WeightConfig weights, String subject, ChartWindow window) {
+        // Grades by date for chronological progress (cached; the stored order is left alone)
+        GradeStore.SubjectGrades grades = store.subject(subject);
+        ChartSeriesCache.Series series = chartSeries.get(store, grades, weights.forSubject(subject).plan(store));
+
+        if (window.shown != series || window.shownVersion != series.version()) {
+            fillChartDataset(window, series);
+        }
+    }
+
+    private static ChartWindow createChartWindow(String subject) {
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+
+        // Create the chart, styled like the exported report cards
+        JFreeChart chart = ProgressChart.create(subject, dataset);
+
+        // Create the chart window; closing only hides it so it can be reopened quickly
+        JFrame chartFrame = new JFrame("Progress Chart: " + subject);
+        chartFrame.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
+
+        ChartPanel chartPanel = new ChartPanel(chart);
+
+        // Set a preferred size for the chart panel to determine window size
+        chartPanel.setPreferredSize(new Dimension(1000, 700)); // Increased chart size for better viewing
+
+        chartFrame.setContentPane(chartPanel);
+
+        chartFrame.pack(); // Use pack() for chart window to respect preferred size
+
+        ChartWindow window = new ChartWindow(chartFrame, chart, chartPanel, dataset);
+
+        // Re-sample when the window gets noticeably wider or narrower
+        chartPanel.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                if (window.shown != null && Math.abs(chartPanel.getWidth() - window.sampledWidth) > 50) {
+                    fillChartDataset(window, window.shown);
+                }
+            }
+        });
+        return window;
+    }
+
+    /**
+     * Shows the series in the window, downsampled to about one point per pixel: each
+     * assignment's score and the running weighted final grade. When every point fits
+     * and the series only grew, just the new points are added.
+     */
+    private static void fillChartDataset(ChartWindow window, ChartSeriesCache.Series series) {
+        int width = window.panel.getWidth() > 0 ? window.panel.getWidth() : window.panel.getPreferredSize().width;
+        boolean append = window.shown == series && window.shownAll && series.size() <= width
+                && window.shownPoints <= series.size();
+        int[] points = append ? null : ChartSeriesCache.downsample(series.percents(), series.size(), width);
+
+        // Suppress a redraw per value while the dataset is changed
+        window.chart.setNotify(false);
+        if (append) {
+            for (int p = window.shownPoints; p < series.size(); p++) {
+                ProgressChart.addPoint(window.dataset, series, p);
+            }
+        } else {
+            ProgressChart.fill(window.dataset, series, points);
+        }
+        window.chart.setNotify(true);
+
+        window.shown = series;
+        window.shownVersion = series.version();
+        window.shownPoints = series.size();
+        window.shownAll = append || points.length == series.size();
+        window.sampledWidth = width;
+    }
+
+    /**
+     * Loads and initialises the chart classes and draws a throwaway chart off-screen, so
+     * the first "View Progress Chart" finds JFreeChart, its fonts and the Java2D
+     * pipelines ready. Creates no Swing component, so it may run on any thread.
+     */
+    static void prewarm() {
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        dataset.addValue(90, ProgressChart.SCORE_SERIES, "Warm-up 1");
+        dataset.addValue(80, ProgressChart.SCORE_SERIES, "Warm-up 2");
+        dataset.addValue(90, ProgressChart.TREND_SERIES, "Warm-up 1");
+        dataset.addValue(85, ProgressChart.TREND_SERIES, "Warm-up 2");
+        JFreeChart chart = ProgressChart.create("Warm-up", dataset);
+
+        BufferedImage image = new BufferedImage(400, 240, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            chart.draw(g2, new Rectangle2D.Double(0, 0, image.getWidth(), image.getHeight()));
+        } finally {
+            g2.dispose();
+        }
+
+        // The panel is a Swing component: initialise its class without creating one
+        try {
+            Class.forName(ChartPanel.class.getName());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
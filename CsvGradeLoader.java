@@ -0,0 +1,586 @@
+/* CsvGradeLoader.java
+   Parallel, chunked reader for the gradeinput.csv format:
+   Name,Subject,Category,Score,OutOf,Date
+*/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Loads grade rows by splitting the CSV file into newline-aligned chunks, reading each
+ * into a reused direct buffer and parsing the chunks in parallel with a byte-level parser.
+ * The file is not memory-mapped: a mapping lives until it is garbage collected, and on
+ * Windows the file cannot be replaced while one exists.
+ * Numbers and dates are parsed straight from the buffered bytes and text values are
+ * resolved to ids through a per-chunk dictionary, so a row allocates no per-field garbage.
+ * Chunk results are merged into a {@link GradeStore} in file order.
+ *
+ * {@link #scan} runs the same parse but hands each row to a {@link RowSink} instead of
+ * collecting it, for callers that only aggregate and must not hold the rows.
+ */
+final class CsvGradeLoader {
+
+    // Chunks below this size are not worth a separate task
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    // Also the size of the read buffers, one per chunk being parsed at a time
+    private static final long MAX_CHUNK_BYTES = 1L << 23;
+
+    // Direct read buffers, reused across chunks and files
+    private static final ConcurrentLinkedQueue<ByteBuffer> READ_BUFFERS = new ConcurrentLinkedQueue<>();
+
+    private static final int FIELD_COUNT = 6;
+    // Field indexes into the ranges passed to a RowSink
+    static final int NAME_FIELD = 0;
+    static final int SUBJECT_FIELD = 1;
+    static final int CATEGORY_FIELD = 2;
+    private static final long BAD_NUMBER = Long.MIN_VALUE;
+
+    private CsvGradeLoader() {
+    }
+
+    /**
+     * Result of a load: the populated store plus row counters.
+     */
+    static class LoadResult {
+        final GradeStore store;
+        final int rowsLoaded;
+        final int rowsSkipped;
+        // File offset the load read up to
+        final long end;
+
+        LoadResult(GradeStore store, int rowsLoaded, int rowsSkipped, long end) {
+            this.store = store;
+            this.rowsLoaded = rowsLoaded;
+            this.rowsSkipped = rowsSkipped;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Rows parsed from part of a file but not yet added to a store, so the parse can run
+     * off the thread that owns the store and only {@link #mergeInto} runs on it.
+     */
+    static final class Parsed {
+        private final List<ChunkResult> chunks;
+        // Offset the parse started from, and just past the last line parsed
+        final long start;
+        final long end;
+
+        private Parsed(List<ChunkResult> chunks, long start, long end) {
+            this.chunks = chunks;
+            this.start = start;
+            this.end = end;
+        }
+
+        int rowCount() {
+            int rows = 0;
+            for (ChunkResult chunk : chunks) rows += chunk.size;
+            return rows;
+        }
+
+        /** Distinct subjects of the parsed rows. */
+        Set<String> subjects() {
+            Set<String> subjects = new LinkedHashSet<>();
+            for (ChunkResult chunk : chunks) {
+                for (int i = 0; i < chunk.subjects.size(); i++) {
+                    subjects.add(chunk.subjects.value(i));
+                }
+            }
+            return subjects;
+        }
+
+        LoadResult mergeInto(GradeStore store) {
+            return merge(chunks, store, end);
+        }
+    }
+
+    /**
+     * Parses the whole file. The first line is treated as the header and skipped.
+     * Rows without exactly six columns, with non-numeric scores or with a date that is
+     * not YYYY-MM-DD are skipped and counted, also in the store's skippedLines().
+     */
+    static LoadResult load(Path file) throws IOException {
+        return load(file, new GradeStore(), true);
+    }
+
+    /**
+     * Appends the rows of a headerless journal to an existing store. A last line without
+     * its newline is a torn write from a crash and is ignored.
+     */
+    static LoadResult loadJournal(Path file, GradeStore into) throws IOException {
+        return load(file, into, false);
+    }
+
+    /**
+     * Parses the complete lines of file from offset from (the start of a line) up to its
+     * last newline, leaving a line that is still being written for the next call. From
+     * offset 0 the first line is the header and is skipped.
+     */
+    static Parsed parseFrom(Path file, long from) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = completeLinesEnd(channel);
+            if (size <= from) return new Parsed(List.of(), from, from);
+            long start = from == 0 ? nextLineStart(channel, 0, size) : from;
+            return new Parsed(parse(channel, start, size), from, size);
+        }
+    }
+
+    /**
+     * Parses the lines of file in [from, to), where both are line starts (or to the end).
+     */
+    static Parsed parseRange(Path file, long from, long to) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (to <= from) return new Parsed(List.of(), from, from);
+            long start = from == 0 ? nextLineStart(channel, 0, to) : from;
+            return new Parsed(parse(channel, start, to), from, to);
+        }
+    }
+
+    /**
+     * Receives the rows of one chunk, on the thread parsing it. Text fields are byte
+     * ranges into buf, valid only during the call; nothing is copied unless the sink
+     * copies it. Numbers and the date are already parsed.
+     */
+    interface RowSink {
+        void row(ByteBuffer buf, int[] fieldStart, int[] fieldEnd, int score, int outOf, int epochDay);
+
+        /** A malformed (non-blank) line was skipped. */
+        void skipped();
+    }
+
+    /**
+     * Parses the whole file (skipping the header) in parallel chunks, feeding each chunk's
+     * rows to its own sink from sinks. Returns the sinks in file order.
+     */
+    static <S extends RowSink> List<S> scan(Path file, Supplier<S> sinks) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = nextLineStart(channel, 0, size);
+            return parse(channel, start, size, sinks);
+        }
+    }
+
+    private static LoadResult load(Path file, GradeStore into, boolean hasHeader) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = hasHeader ? channel.size() : completeLinesEnd(channel);
+            long start = hasHeader ? nextLineStart(channel, 0, size) : 0; // Skip the header
+            return merge(parse(channel, start, size), into, size);
+        }
+    }
+
+    private static List<ChunkResult> parse(FileChannel channel, long start, long size) throws IOException {
+        return parse(channel, start, size, ChunkResult::new);
+    }
+
+    private static <S extends RowSink> List<S> parse(FileChannel channel, long start, long size, Supplier<S> sinks)
+            throws IOException {
+        List<long[]> chunks = split(channel, start, size);
+        try {
+            return chunks.parallelStream()
+                    .map(range -> parseChunk(channel, range[0], range[1], sinks.get()))
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ---------------- Chunking ----------------
+
+    /**
+     * Splits [start, size) into ranges that each begin at the start of a line.
+     */
+    private static List<long[]> split(FileChannel channel, long start, long size) throws IOException {
+        int workers = Runtime.getRuntime().availableProcessors() * 4;
+        long target = Math.max(MIN_CHUNK_BYTES, (size - start) / workers);
+        target = Math.min(target, MAX_CHUNK_BYTES);
+
+        List<long[]> chunks = new ArrayList<>();
+        long from = start;
+        while (from < size) {
+            long to = Math.min(size, from + target);
+            if (to < size) {
+                to = nextLineStart(channel, to, size);
+            }
+            chunks.add(new long[] {from, to});
+            from = to;
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns the offset just past the first '\n' at or after pos, or size if there is none.
+     */
+    private static long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') return pos + i + 1;
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the offset just past the last '\n' in the file, or 0 if there is none.
+     */
+    static long completeLinesEnd(FileChannel channel) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long end = channel.size();
+        while (end > 0) {
+            long from = Math.max(0, end - probe.capacity());
+            probe.clear().limit((int) (end - from));
+            channel.read(probe, from);
+            for (int i = probe.position() - 1; i >= 0; i--) {
+                if (probe.get(i) == '\n') return from + i + 1;
+            }
+            end = from;
+        }
+        return 0;
+    }
+
+    // ---------------- Parsing ----------------
+
+    /**
+     * Rows of one chunk in primitive columns. Text columns hold chunk-local ids that
+     * index into the chunk's dictionaries until they are remapped by merge().
+     */
+    private static class ChunkResult implements RowSink {
+        final StringTable names = new StringTable();
+        final StringTable subjects = new StringTable();
+        final StringTable categories = new StringTable();
+        int size;
+        int[] nameIds = new int[1024];
+        int[] subjectIds = new int[1024];
+        int[] categoryIds = new int[1024];
+        int[] scores = new int[1024];
+        int[] outOfs = new int[1024];
+        int[] epochDays = new int[1024];
+        int skipped;
+
+        @Override
+        public void row(ByteBuffer buf, int[] fieldStart, int[] fieldEnd, int score, int outOf, int epochDay) {
+            add(names.id(buf, fieldStart[NAME_FIELD], fieldEnd[NAME_FIELD]),
+                    subjects.id(buf, fieldStart[SUBJECT_FIELD], fieldEnd[SUBJECT_FIELD]),
+                    categories.id(buf, fieldStart[CATEGORY_FIELD], fieldEnd[CATEGORY_FIELD]),
+                    score, outOf, epochDay);
+        }
+
+        @Override
+        public void skipped() {
+            skipped++;
+        }
+
+        void add(int nameId, int subjectId, int categoryId, int score, int outOf, int epochDay) {
+            if (size == scores.length) {
+                int capacity = size * 2;
+                nameIds = Arrays.copyOf(nameIds, capacity);
+                subjectIds = Arrays.copyOf(subjectIds, capacity);
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+                outOfs = Arrays.copyOf(outOfs, capacity);
+                epochDays = Arrays.copyOf(epochDays, capacity);
+            }
+            nameIds[size] = nameId;
+            subjectIds[size] = subjectId;
+            categoryIds[size] = categoryId;
+            scores[size] = score;
+            outOfs[size] = outOf;
+            epochDays[size] = epochDay;
+            size++;
+        }
+    }
+
+    private static <S extends RowSink> S parseChunk(FileChannel channel, long from, long to, S sink) {
+        // A chunk can run past MAX_CHUNK_BYTES by the rest of its last line
+        int length = Math.toIntExact(to - from);
+        ByteBuffer buf = READ_BUFFERS.poll();
+        if (buf == null || buf.capacity() < length) {
+            buf = ByteBuffer.allocateDirect(Math.max(length, (int) MAX_CHUNK_BYTES));
+        }
+        try {
+            buf.clear().limit(length);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, from + buf.position()) < 0) {
+                    throw new IOException("File shrank while it was being read");
+                }
+            }
+            buf.flip();
+            new ChunkParser(buf, sink).parse();
+            return sink;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            READ_BUFFERS.offer(buf);
+        }
+    }
+
+    /**
+     * Single-threaded parser over one chunk. Field boundaries are tracked as
+     * offsets into the buffer; nothing is copied unless a text value is new to the chunk.
+     */
+    private static class ChunkParser {
+        private final ByteBuffer buf;
+        private final int[] fieldStart = new int[FIELD_COUNT];
+        private final int[] fieldEnd = new int[FIELD_COUNT];
+        private final RowSink sink;
+
+        ChunkParser(ByteBuffer buf, RowSink sink) {
+            this.buf = buf;
+            this.sink = sink;
+        }
+
+        void parse() {
+            int limit = buf.limit();
+            int pos = 0;
+            while (pos < limit) {
+                int lineStart = pos;
+                int commas = 0;
+                fieldStart[0] = pos;
+
+                while (pos < limit) {
+                    byte b = buf.get(pos);
+                    if (b == '\n') break;
+                    if (b == ',') {
+                        commas++;
+                        if (commas < FIELD_COUNT) {
+                            fieldEnd[commas - 1] = pos;
+                            fieldStart[commas] = pos + 1;
+                        }
+                    }
+                    pos++;
+                }
+                int lineEnd = pos;
+                pos++; // Step over the newline
+
+                if (commas != FIELD_COUNT - 1) {
+                    if (!isBlank(lineStart, lineEnd)) sink.skipped();
+                    continue;
+                }
+                fieldEnd[FIELD_COUNT - 1] = lineEnd;
+                for (int f = 0; f < FIELD_COUNT; f++) {
+                    trim(f);
+                }
+
+                long score = parseInt(fieldStart[3], fieldEnd[3]);
+                long outOf = parseInt(fieldStart[4], fieldEnd[4]);
+                long epochDay = parseIsoDate(fieldStart[5], fieldEnd[5]);
+                if (score == BAD_NUMBER || outOf == BAD_NUMBER || epochDay == BAD_NUMBER) {
+                    System.err.println("Skipping malformed grade line: " + lineText(lineStart, lineEnd));
+                    sink.skipped();
+                    continue;
+                }
+
+                sink.row(buf, fieldStart, fieldEnd, (int) score, (int) outOf, (int) epochDay);
+            }
+        }
+
+        /** Same rule as String.trim(): drop leading/trailing bytes <= ' '. */
+        private void trim(int f) {
+            int s = fieldStart[f];
+            int e = fieldEnd[f];
+            while (s < e && (buf.get(s) & 0xFF) <= ' ') s++;
+            while (e > s && (buf.get(e - 1) & 0xFF) <= ' ') e--;
+            fieldStart[f] = s;
+            fieldEnd[f] = e;
+        }
+
+        private boolean isBlank(int from, int to) {
+            for (int i = from; i < to; i++) {
+                if ((buf.get(i) & 0xFF) > ' ') return false;
+            }
+            return true;
+        }
+
+        /**
+         * Parses a decimal int the way Integer.parseInt does for ASCII input,
+         * returning BAD_NUMBER instead of throwing.
+         */
+        private long parseInt(int from, int to) {
+            if (from >= to) return BAD_NUMBER;
+            boolean negative = false;
+            byte first = buf.get(from);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                if (++from == to) return BAD_NUMBER;
+            }
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = buf.get(i) - '0';
+                if (digit < 0 || digit > 9) return BAD_NUMBER;
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) return BAD_NUMBER;
+            }
+            if (negative) value = -value;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) return BAD_NUMBER;
+            return value;
+        }
+
+        /**
+         * Parses YYYY-MM-DD into an epoch-day, returning BAD_NUMBER for anything else.
+         */
+        private long parseIsoDate(int from, int to) {
+            if (to - from != 10 || buf.get(from + 4) != '-' || buf.get(from + 7) != '-') return BAD_NUMBER;
+            int year = digits(from, from + 4);
+            int month = digits(from + 5, from + 7);
+            int day = digits(from + 8, from + 10);
+            if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) return BAD_NUMBER;
+            try {
+                return LocalDate.of(year, month, day).toEpochDay();
+            } catch (DateTimeException e) {
+                return BAD_NUMBER; // e.g. 2025-02-30
+            }
+        }
+
+        /** Unsigned fixed-width decimal, or -1 if any byte is not a digit. */
+        private int digits(int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = buf.get(i) - '0';
+                if (digit < 0 || digit > 9) return -1;
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private String lineText(int from, int to) {
+            if (to > from && buf.get(to - 1) == '\r') to--;
+            byte[] bytes = new byte[to - from];
+            buf.get(from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Open-addressing dictionary from UTF-8 byte ranges to dense ids. A hit costs a hash
+     * and a byte comparison; only the first occurrence of a value allocates.
+     */
+    static final class StringTable {
+        private int[] hashes = new int[256];
+        private byte[][] keys = new byte[256][];
+        private int[] slotIds = new int[256];
+        private String[] values = new String[128];
+        private int count;
+
+        int id(ByteBuffer buf, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + buf.get(i);
+            }
+            int mask = keys.length - 1;
+            int slot = mix(hash) & mask;
+            while (keys[slot] != null) {
+                if (hashes[slot] == hash && equalsRange(keys[slot], buf, from, to)) {
+                    return slotIds[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            byte[] key = new byte[to - from];
+            buf.get(from, key);
+            int id = count++;
+            if (id == values.length) values = Arrays.copyOf(values, id * 2);
+            values[id] = new String(key, StandardCharsets.UTF_8);
+            hashes[slot] = hash;
+            keys[slot] = key;
+            slotIds[slot] = id;
+            if (count * 2 > keys.length) grow();
+            return id;
+        }
+
+        int size() {
+            return count;
+        }
+
+        String value(int id) {
+            return values[id];
+        }
+
+        private static boolean equalsRange(byte[] key, ByteBuffer buf, int from, int to) {
+            if (key.length != to - from) return false;
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buf.get(from + i)) return false;
+            }
+            return true;
+        }
+
+        private static int mix(int h) {
+            return h ^ (h >>> 16);
+        }
+
+        private void grow() {
+            int[] oldHashes = hashes;
+            byte[][] oldKeys = keys;
+            int[] oldIds = slotIds;
+            hashes = new int[oldKeys.length * 2];
+            keys = new byte[oldKeys.length * 2][];
+            slotIds = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) continue;
+                int slot = mix(oldHashes[i]) & mask;
+                while (keys[slot] != null) slot = (slot + 1) & mask;
+                hashes[slot] = oldHashes[i];
+                keys[slot] = oldKeys[i];
+                slotIds[slot] = oldIds[i];
+            }
+        }
+    }
+
+    // ---------------- Merging ----------------
+
+    /**
+     * Folds the per-chunk columns into the store, preserving file order.
+     * Chunk-local ids are translated to store ids once per distinct value.
+     */
+    private static LoadResult merge(List<ChunkResult> results, GradeStore store, long end) {
+        int loaded = 0;
+        int skipped = 0;
+
+        for (ChunkResult chunk : results) {
+            int[] nameMap = new int[chunk.names.size()];
+            for (int i = 0; i < nameMap.length; i++) {
+                nameMap[i] = store.assignmentId(chunk.names.value(i));
+            }
+            int[] categoryMap = new int[chunk.categories.size()];
+            for (int i = 0; i < categoryMap.length; i++) {
+                categoryMap[i] = store.categoryId(chunk.categories.value(i));
+            }
+            GradeStore.SubjectGrades[] subjectMap = new GradeStore.SubjectGrades[chunk.subjects.size()];
+            for (int i = 0; i < subjectMap.length; i++) {
+                subjectMap[i] = store.subjectFor(chunk.subjects.value(i));
+            }
+
+            for (int row = 0; row < chunk.size; row++) {
+                subjectMap[chunk.subjectIds[row]].add(
+                        nameMap[chunk.nameIds[row]],
+                        categoryMap[chunk.categoryIds[row]],
+                        chunk.scores[row],
+                        chunk.outOfs[row],
+                        chunk.epochDays[row]);
+            }
+            loaded += chunk.size;
+            skipped += chunk.skipped;
+        }
+        store.countSkipped(skipped);
+        Diagnostics.recordRows(loaded, skipped);
+        return new LoadResult(store, loaded, skipped, end);
+    }
+}
@@ -0,0 +1,141 @@
+/* DateIndex.java
+   Secondary index of one subject's rows ordered by date.
+*/
+
+import java.util.Arrays;
+
+/**
+ * Row numbers of a {@link GradeStore.SubjectGrades} ordered by epoch day (ties in
+ * insertion order), with the days alongside so range lookups are a binary search
+ * over a plain int array.
+ *
+ * The index follows the subject lazily: rows added since the last lookup are folded
+ * in on the next one. A few new rows (the usual case: grades entered one at a time,
+ * mostly dated today) are inserted in place; a large batch, such as a freshly loaded
+ * file, is sorted once and merged. Not thread-safe; used by the store's owner.
+ */
+final class DateIndex {
+
+    // Above this many pending rows a sort-and-merge beats individual inserts
+    private static final int INSERT_LIMIT = 32;
+
+    private int[] rows = new int[0];
+    private int[] days = new int[0];
+    // Subject rows [0, indexed) are in the index
+    private int indexed;
+
+    /**
+     * Brings the index up to the first size rows of epochDays.
+     */
+    void catchUp(int size, int[] epochDays) {
+        int pending = size - indexed;
+        if (pending <= 0) return;
+        if (rows.length < size) {
+            int capacity = Math.max(size, rows.length + (rows.length >> 1));
+            rows = Arrays.copyOf(rows, capacity);
+            days = Arrays.copyOf(days, capacity);
+        }
+
+        if (pending <= INSERT_LIMIT) {
+            for (int row = indexed; row < size; row++) {
+                insert(row, epochDays[row]);
+            }
+        } else {
+            merge(size, epochDays);
+        }
+        indexed = size;
+    }
+
+    private void insert(int row, int day) {
+        // After every row with day <= this one, so ties stay in insertion order
+        int pos = upperBound(day);
+        int n = indexed;
+        if (pos < n) {
+            System.arraycopy(rows, pos, rows, pos + 1, n - pos);
+            System.arraycopy(days, pos, days, pos + 1, n - pos);
+        }
+        rows[pos] = row;
+        days[pos] = day;
+        indexed++;
+    }
+
+    private void merge(int size, int[] epochDays) {
+        int pending = size - indexed;
+        long[] keys = new long[pending];
+        for (int i = 0; i < pending; i++) {
+            int row = indexed + i;
+            keys[i] = ((long) epochDays[row] << 32) | row;
+        }
+        Arrays.sort(keys);
+
+        // Merge from the back so the existing entries can be shifted in place
+        int a = indexed - 1;
+        int b = pending - 1;
+        for (int out = size - 1; out >= 0 && b >= 0; out--) {
+            int newDay = (int) (keys[b] >> 32);
+            // Existing rows are older, so they win ties by going first
+            if (a >= 0 && days[a] > newDay) {
+                rows[out] = rows[a];
+                days[out] = days[a];
+                a--;
+            } else {
+                rows[out] = (int) keys[b];
+                days[out] = newDay;
+                b--;
+            }
+        }
+    }
+
+    long estimatedBytes() {
+        return 8L * rows.length;
+    }
+
+    // ---------------- Lookups (positions in date order) ----------------
+
+    int size() {
+        return indexed;
+    }
+
+    int row(int pos) {
+        return rows[pos];
+    }
+
+    int day(int pos) {
+        return days[pos];
+    }
+
+    /**
+     * First position whose day is >= day.
+     */
+    int lowerBound(int day) {
+        int lo = 0;
+        int hi = indexed;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * First position whose day is > day.
+     */
+    int upperBound(int day) {
+        int lo = 0;
+        int hi = indexed;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] <= day) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Rows at positions [from, to), in date order.
+     */
+    int[] rows(int from, int to) {
+        return Arrays.copyOfRange(rows, from, to);
+    }
+}
@@ -0,0 +1,318 @@
+/* Diagnostics.java
+   Operation timers and counters, published over JMX as gradehelper:type=Diagnostics.
+*/
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide performance counters. Recording is allocation-free: a timer is
+ * {@code long start = System.nanoTime(); ...; Diagnostics.LOAD.record(start);}, which
+ * bumps a slot in a fixed log-linear histogram, and counters are LongAdders.
+ *
+ * Everything is readable over JMX (see {@link #register()}) and from the Data >
+ * Diagnostics window.
+ */
+final class Diagnostics {
+
+    static final Timer LOAD = new Timer("Load");
+    static final Timer SAVE = new Timer("Save");
+    static final Timer SUMMARY = new Timer("Summary");
+    static final Timer CHART = new Timer("Chart");
+    static final Timer JOURNAL_FLUSH = new Timer("JournalFlush");
+    // One HTTP request in server mode, including cache hits
+    static final Timer REQUEST = new Timer("Request");
+    static final Timer[] TIMERS = {LOAD, SAVE, SUMMARY, CHART, JOURNAL_FLUSH, REQUEST};
+
+    static final LongAdder ROWS_LOADED = new LongAdder();
+    static final LongAdder ROWS_SKIPPED = new LongAdder();
+    static final LongAdder BYTES_WRITTEN = new LongAdder();
+    // Estimated heap held by the grade store shown in the window, in bytes
+    private static final AtomicLong STORE_BYTES = new AtomicLong();
+    // Process start to the main window first showing, in ms; -1 until it has
+    private static final AtomicLong FIRST_FRAME_MILLIS = new AtomicLong(-1);
+
+    static final String OBJECT_NAME = "gradehelper:type=Diagnostics";
+
+    private Diagnostics() {
+    }
+
+    /**
+     * Latency histogram for one operation. Buckets are log-linear: 8 per power of two,
+     * so a percentile is within about 12% of the true value, from 1 ns up to ~18 hours.
+     */
+    static final class Timer {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+        final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records the time since start, a System.nanoTime() value.
+         */
+        void record(long start) {
+            recordNanos(System.nanoTime() - start);
+        }
+
+        void recordNanos(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) return (int) nanos;
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /** Upper edge of a bucket, in nanoseconds. */
+        private static double bucketLimit(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket + 1;
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            return Math.scalb((double) (SUB_BUCKETS + sub + 1), exponent - SUB_BITS);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+
+        double maxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        /**
+         * Approximate latency at quantile q (0..1) in milliseconds, 0 if nothing was recorded.
+         */
+        double percentileMillis(double q) {
+            long total = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(bucketLimit(i), (double) maxNanos.get()) / 1e6;
+                }
+            }
+            return maxMillis();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+    }
+
+    // ---------------- Counters ----------------
+
+    static void recordRows(long loaded, long skipped) {
+        ROWS_LOADED.add(loaded);
+        ROWS_SKIPPED.add(skipped);
+    }
+
+    static void recordBytesWritten(long bytes) {
+        BYTES_WRITTEN.add(bytes);
+    }
+
+    static void setStoreBytes(long bytes) {
+        STORE_BYTES.set(bytes);
+    }
+
+    static long storeBytes() {
+        return STORE_BYTES.get();
+    }
+
+    static void setFirstFrameMillis(long millis) {
+        FIRST_FRAME_MILLIS.set(millis);
+    }
+
+    static long firstFrameMillis() {
+        return FIRST_FRAME_MILLIS.get();
+    }
+
+    static void reset() {
+        for (Timer timer : TIMERS) timer.reset();
+        ROWS_LOADED.reset();
+        ROWS_SKIPPED.reset();
+        BYTES_WRITTEN.reset();
+    }
+
+    /**
+     * Human-readable report for the diagnostics window.
+     */
+    static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-13s %8s %10s %10s %10s %10s %10s%n",
+                "Operation", "Count", "Mean ms", "p50 ms", "p95 ms", "p99 ms", "Max ms"));
+        for (Timer t : TIMERS) {
+            sb.append(String.format(Locale.ROOT, "%-13s %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    t.name, t.count(), t.meanMillis(), t.percentileMillis(0.50), t.percentileMillis(0.95),
+                    t.percentileMillis(0.99), t.maxMillis()));
+        }
+        Runtime rt = Runtime.getRuntime();
+        sb.append('\n');
+        sb.append(String.format(Locale.ROOT, "Rows loaded:        %,d%n", ROWS_LOADED.sum()));
+        sb.append(String.format(Locale.ROOT, "Rows skipped:       %,d%n", ROWS_SKIPPED.sum()));
+        sb.append(String.format(Locale.ROOT, "Bytes written:      %,d%n", BYTES_WRITTEN.sum()));
+        sb.append(String.format(Locale.ROOT, "Grade store (est.): %,.1f MB%n", storeBytes() / 1048576.0));
+        if (firstFrameMillis() >= 0) {
+            sb.append(String.format(Locale.ROOT, "First frame:        %,d ms after launch%n", firstFrameMillis()));
+        }
+        sb.append(String.format(Locale.ROOT, "JVM heap used:      %,.1f of %,.1f MB%n",
+                (rt.totalMemory() - rt.freeMemory()) / 1048576.0, rt.maxMemory() / 1048576.0));
+        return sb.toString();
+    }
+
+    // ---------------- JMX ----------------
+
+    /**
+     * Registers the diagnostics MBean with the platform MBean server, once per process.
+     */
+    static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already registered
+        } catch (JMException | SecurityException e) {
+            System.err.println("Could not register diagnostics MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Attributes: RowsLoaded, RowsSkipped, BytesWritten, StoreBytes, FirstFrameMillis and, per operation,
+     * &lt;Op&gt;Count, &lt;Op&gt;MeanMillis, &lt;Op&gt;P50Millis, &lt;Op&gt;P95Millis,
+     * &lt;Op&gt;P99Millis, &lt;Op&gt;MaxMillis. Operation: reset().
+     */
+    private static final class Bean implements DynamicMBean {
+        private static final String[] STATS = {"Count", "MeanMillis", "P50Millis", "P95Millis", "P99Millis", "MaxMillis"};
+        private final MBeanInfo info;
+
+        Bean() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            attributes.add(longAttribute("RowsLoaded", "Grade rows loaded from CSV files and journals"));
+            attributes.add(longAttribute("RowsSkipped", "Malformed grade rows skipped while loading"));
+            attributes.add(longAttribute("BytesWritten", "Bytes written to journals, CSV files and snapshots"));
+            attributes.add(longAttribute("StoreBytes", "Estimated heap held by the grade store"));
+            attributes.add(longAttribute("FirstFrameMillis", "Process start to the main window showing, -1 before"));
+            for (Timer t : TIMERS) {
+                for (String stat : STATS) {
+                    String type = stat.equals("Count") ? "long" : "double";
+                    attributes.add(new MBeanAttributeInfo(t.name + stat, type, t.name + " " + stat, true, false, false));
+                }
+            }
+            MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clears all timers and counters",
+                    null, "void", MBeanOperationInfo.ACTION);
+            info = new MBeanInfo(Diagnostics.class.getName(), "Grade helper performance counters",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[]{reset}, null);
+        }
+
+        private static MBeanAttributeInfo longAttribute(String name, String description) {
+            return new MBeanAttributeInfo(name, "long", description, true, false, false);
+        }
+
+        @Override
+        public Object getAttribute(String name) throws javax.management.AttributeNotFoundException {
+            switch (name) {
+                case "RowsLoaded": return ROWS_LOADED.sum();
+                case "RowsSkipped": return ROWS_SKIPPED.sum();
+                case "BytesWritten": return BYTES_WRITTEN.sum();
+                case "StoreBytes": return storeBytes();
+                case "FirstFrameMillis": return firstFrameMillis();
+                default: break;
+            }
+            for (Timer t : TIMERS) {
+                if (!name.startsWith(t.name)) continue;
+                switch (name.substring(t.name.length())) {
+                    case "Count": return t.count();
+                    case "MeanMillis": return t.meanMillis();
+                    case "P50Millis": return t.percentileMillis(0.50);
+                    case "P95Millis": return t.percentileMillis(0.95);
+                    case "P99Millis": return t.percentileMillis(0.99);
+                    case "MaxMillis": return t.maxMillis();
+                    default: break;
+                }
+            }
+            throw new javax.management.AttributeNotFoundException(name);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                try {
+                    list.add(new Attribute(name, getAttribute(name)));
+                } catch (javax.management.AttributeNotFoundException e) {
+                    // Omitted, as the DynamicMBean contract allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws javax.management.AttributeNotFoundException {
+            throw new javax.management.AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws javax.management.ReflectionException {
+            if (action.equals("reset")) {
+                reset();
+                return null;
+            }
+            throw new javax.management.ReflectionException(new NoSuchMethodException(action));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return info;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/* GradeDashboard.java
+   Every subject's final grade and letter in one window, rolled up into an overall GPA.
+*/
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableRowSorter;
+
+/**
+ * A non-modal window listing each subject's weighted final grade, letter and grade
+ * points, with the unweighted GPA over all subjects that have graded categories.
+ * It only displays summaries; grading owns the per-subject summary cache, computes the
+ * stale ones in parallel and calls {@link #update} as they arrive, so the window opens
+ * at once with whatever is already cached. Double-clicking a subject selects it in
+ * the main window. EDT-only.
+ */
+final class GradeDashboard {
+
+    private static JDialog dialog;
+    private static DashboardModel model;
+    private static JLabel gpaLabel;
+
+    private GradeDashboard() {
+    }
+
+    /**
+     * Shows the window, creating it on first use; onSelect is called with a
+     * double-clicked subject.
+     */
+    static void show(JFrame parent, Consumer<String> onSelect) {
+        if (dialog == null) {
+            create(parent, onSelect);
+            dialog.setLocationRelativeTo(parent);
+        }
+        dialog.setVisible(true);
+        dialog.toFront();
+    }
+
+    static boolean isOpen() {
+        return dialog != null && dialog.isVisible();
+    }
+
+    /**
+     * Shows summaries (in subject order) and how many subjects are still being computed.
+     */
+    static void update(List<SubjectSummary> summaries, int pending) {
+        if (dialog == null) return;
+        model.setRows(summaries);
+
+        int graded = 0;
+        double points = 0.0;
+        for (SubjectSummary summary : summaries) {
+            if (summary.totalCategoryWeightUsed > 0) {
+                points += gradePoints(summary);
+                graded++;
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        if (graded == 0) {
+            text.append("Overall GPA: -");
+        } else {
+            text.append(String.format(Locale.ROOT, "Overall GPA: %.2f  (%d subject%s)",
+                    points / graded, graded, graded == 1 ? "" : "s"));
+        }
+        if (pending > 0) {
+            text.append(String.format(Locale.ROOT, "    Calculating %d more...", pending));
+        }
+        gpaLabel.setText(text.toString());
+    }
+
+    /**
+     * Grade points for the summary's letter on the 4.0 scale.
+     */
+    static double gradePoints(SubjectSummary summary) {
+        return grading.GRADE_POINTS[grading.gradeIndex((int) Math.round(summary.finalGrade))];
+    }
+
+    private static void create(JFrame parent, Consumer<String> onSelect) {
+        dialog = new JDialog(parent, "All Subjects", false);
+        dialog.setLayout(new BorderLayout(10, 10));
+        dialog.setDefaultCloseOperation(JDialog.HIDE_ON_CLOSE);
+
+        model = new DashboardModel();
+        JTable table = new JTable(model);
+        table.setRowSorter(new TableRowSorter<>(model));
+        table.setFillsViewportHeight(true);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                if (e.getClickCount() == 2 && row >= 0) {
+                    onSelect.accept(model.subject(table.convertRowIndexToModel(row)));
+                }
+            }
+        });
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setPreferredSize(new Dimension(620, 400));
+
+        gpaLabel = new JLabel(" ");
+        gpaLabel.setFont(gpaLabel.getFont().deriveFont(Font.BOLD, 14f));
+        gpaLabel.setBorder(new EmptyBorder(0, 10, 10, 10));
+
+        dialog.add(scroll, BorderLayout.CENTER);
+        dialog.add(gpaLabel, BorderLayout.SOUTH);
+        dialog.pack();
+    }
+
+    /**
+     * One row per subject summary.
+     */
+    private static final class DashboardModel extends AbstractTableModel {
+        private static final String[] COLUMN_NAMES = {"Subject", "Final Grade", "Letter", "Grade Points", "Weight Used"};
+        private static final Class<?>[] COLUMN_CLASSES = {String.class, Double.class, String.class, Double.class, Double.class};
+
+        private List<SubjectSummary> rows = new ArrayList<>();
+
+        void setRows(List<SubjectSummary> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        String subject(int row) {
+            return rows.get(row).subject;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return COLUMN_CLASSES[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            SubjectSummary summary = rows.get(row);
+            boolean graded = summary.totalCategoryWeightUsed > 0;
+            return switch (column) {
+                case 0 -> summary.subject;
+                case 1 -> graded ? round2(summary.finalGrade) : null;
+                case 2 -> graded ? summary.letterGrade : "-";
+                case 3 -> graded ? gradePoints(summary) : null;
+                default -> round2(summary.totalCategoryWeightUsed);
+            };
+        }
+
+        private static Double round2(double value) {
+            return Math.round(value * 100.0) / 100.0;
+        }
+    }
+}
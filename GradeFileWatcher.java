@@ -0,0 +1,220 @@
+/* GradeFileWatcher.java
+   Follows gradeinput.csv while the app is open, parsing only the rows appended since the last read.
+*/
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the gradebook CSV for an external writer (e.g. an LMS export appending rows)
+ * and remembers how far it has read: the byte offset, the file's identity and the last
+ * bytes before the offset. When the file grows, only the complete lines past the offset
+ * are parsed and handed to {@link Listener#appended}. A smaller file, a different file
+ * (replaced by rename) or changed bytes before the offset mean the file was rewritten,
+ * and {@link Listener#replaced} asks for a full reload instead.
+ *
+ * Changes arrive through a WatchService on the file's directory; the file is also
+ * checked every {@link #POLL_SECONDS} seconds for file systems that do not report them.
+ * While the app appends to the CSV itself (a compaction) the watcher is paused and then
+ * told which bytes it wrote, so those rows, which the app already has, are skipped.
+ */
+final class GradeFileWatcher implements Closeable {
+
+    private static final int POLL_SECONDS = 5;
+    // Quiet time after an event before reading, so a burst of writes is read once
+    private static final int SETTLE_MILLIS = 100;
+    // Bytes before the offset compared to tell an append from a rewrite
+    private static final int TAIL_BYTES = 64;
+
+    /**
+     * Receives changes on the watcher thread.
+     */
+    interface Listener {
+        /** Rows appended since the last call; parsed but not yet merged. */
+        void appended(CsvGradeLoader.Parsed rows);
+
+        /** The file was truncated or rewritten; reload it and call {@link #baseline}. */
+        void replaced();
+    }
+
+    private final Path csvFile;
+    private final Listener listener;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    // Guarded by this
+    private long offset;
+    private Object fileKey;
+    private byte[] tail = new byte[0];
+    private int paused;
+    // Byte ranges {from, to} the app appended itself, in file order
+    private final ArrayDeque<long[]> skips = new ArrayDeque<>();
+    // Set after replaced() until the next baseline(), so one rewrite is reported once
+    private boolean stale = true;
+
+    GradeFileWatcher(Path csvFile, Listener listener) throws IOException {
+        this.csvFile = csvFile.toAbsolutePath();
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.csvFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watchLoop, "grade-file-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Records that the first offset bytes of the current file are in the store, e.g. right
+     * after loading it. Call from any thread.
+     */
+    synchronized void baseline(long offset) {
+        this.offset = offset;
+        skips.clear();
+        try {
+            if (Files.exists(csvFile)) {
+                fileKey = Files.readAttributes(csvFile, BasicFileAttributes.class).fileKey();
+                tail = readTail(offset);
+            } else {
+                fileKey = null;
+                tail = new byte[0];
+            }
+            stale = false;
+        } catch (IOException e) {
+            // Checked again on the next change
+            System.err.println("Could not read " + csvFile + ": " + e.getMessage());
+            stale = true;
+        }
+    }
+
+    /**
+     * Ignores changes until the matching {@link #resume}, while the app writes the file itself.
+     */
+    synchronized void pause() {
+        paused++;
+    }
+
+    /**
+     * Ends a {@link #pause}. If the app appended to the file, [from, to) are the bytes it
+     * wrote; their rows are not reported. Pass from == to if it wrote nothing (or the
+     * write failed). Then looks for rows that arrived in the meantime.
+     */
+    void resume(long from, long to) {
+        synchronized (this) {
+            paused--;
+            // The app created the file: everything before its rows is its header
+            if (fileKey == null && to > from) baseline(from);
+            if (to > from) skips.add(new long[] {from, to});
+        }
+        check();
+    }
+
+    private void watchLoop() {
+        String name = csvFile.getFileName().toString();
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(POLL_SECONDS, TimeUnit.SECONDS);
+                if (key != null) {
+                    boolean ours = key.pollEvents().stream()
+                            .anyMatch(e -> e.context() == null || e.context().toString().equals(name));
+                    key.reset();
+                    if (!ours) continue;
+                    // Let a burst of writes settle, then drain what it queued
+                    Thread.sleep(SETTLE_MILLIS);
+                    WatchKey more;
+                    while ((more = watchService.poll()) != null) {
+                        more.pollEvents();
+                        more.reset();
+                    }
+                }
+                check();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * Compares the file with what was read so far and reports appended rows or a rewrite.
+     */
+    private void check() {
+        List<CsvGradeLoader.Parsed> appended = new ArrayList<>(2);
+        boolean replaced = false;
+        synchronized (this) {
+            if (paused > 0 || stale || !Files.exists(csvFile)) return;
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(csvFile, BasicFileAttributes.class);
+                if (!Objects.equals(attrs.fileKey(), fileKey) || attrs.size() < offset
+                        || !Arrays.equals(readTail(offset), tail)) {
+                    stale = true;
+                    replaced = true;
+                } else {
+                    long start = offset;
+                    // Rows before each range the app wrote, then past it
+                    while (!skips.isEmpty()) {
+                        long[] skip = skips.poll();
+                        if (skip[0] > offset) appended.add(CsvGradeLoader.parseRange(csvFile, offset, skip[0]));
+                        offset = Math.max(offset, skip[1]);
+                    }
+                    if (attrs.size() > offset) {
+                        CsvGradeLoader.Parsed rows = CsvGradeLoader.parseFrom(csvFile, offset);
+                        // Empty while there is only a partial line so far
+                        if (rows.end > offset) appended.add(rows);
+                        offset = rows.end;
+                    }
+                    if (offset == start) return;
+                    tail = readTail(offset);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not read " + csvFile + ": " + e.getMessage());
+                return;
+            }
+        }
+        // Outside the lock so a listener may call back into the watcher
+        if (replaced) {
+            listener.replaced();
+        } else {
+            for (CsvGradeLoader.Parsed rows : appended) {
+                listener.appended(rows);
+            }
+        }
+    }
+
+    /** Up to TAIL_BYTES bytes ending at end, or fewer if the file is shorter. */
+    private byte[] readTail(long end) throws IOException {
+        try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            long from = Math.max(0, Math.min(end, channel.size()) - TAIL_BYTES);
+            ByteBuffer buf = ByteBuffer.allocate((int) (Math.min(end, channel.size()) - from));
+            while (buf.hasRemaining() && channel.read(buf, from + buf.position()) > 0) {
+                // Keep reading
+            }
+            return Arrays.copyOf(buf.array(), buf.position());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,387 @@
+/* GradeImporter.java
+   Bulk import of grade CSV files: concurrent readers, validation, de-duplication and a rejection report.
+   Usage: java grading import <file>... [--into <csv>] [--weights <file>] [--report <file>] [--threads <n>]
+*/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Brings other gradebooks into the store. Reader threads parse and validate one file
+ * each and hand batches of valid rows to a bounded queue, so fast readers wait for the
+ * merge instead of buffering whole files. A single consumer drains the queue in order
+ * of arrival and passes each batch to a {@link BatchSink}; in the app that merges it on
+ * the EDT through a {@link Merger}, which drops rows whose (name, subject, date) is
+ * already in the store or earlier in the import.
+ *
+ * Rows are checked the way the Add Grade dialog checks them: six columns, a name and
+ * subject, a category that some weight scheme knows, integer scores, a positive Out Of
+ * and a YYYY-MM-DD date. Every rejected or duplicate line goes to a {@link Report}
+ * CSV with its file, line number and reason.
+ */
+final class GradeImporter {
+
+    // Valid rows per batch handed to the merge
+    static final int BATCH_ROWS = 1024;
+    // Batches that may wait for the merge before readers block
+    private static final int QUEUE_BATCHES = 16;
+
+    // Marks the end of the queue once every reader has finished
+    private static final List<Row> END = List.of();
+
+    private final Set<String> categories;
+    private final int threads;
+
+    GradeImporter(WeightConfig weights, int threads) {
+        this.categories = new HashSet<>(List.of(weights.allCategories()));
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * One validated input row, with where it came from for the report.
+     */
+    static final class Row {
+        final String name;
+        final String subject;
+        final String category;
+        final int score;
+        final int outOf;
+        final int epochDay;
+        final Path file;
+        final int line;
+        final String text;
+
+        Row(String name, String subject, String category, int score, int outOf, int epochDay, Path file, int line, String text) {
+            this.name = name;
+            this.subject = subject;
+            this.category = category;
+            this.score = score;
+            this.outOf = outOf;
+            this.epochDay = epochDay;
+            this.file = file;
+            this.line = line;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Receives batches of valid rows on the thread that called {@link #importFiles}, one at a time.
+     */
+    interface BatchSink {
+        void accept(List<Row> batch) throws Exception;
+    }
+
+    /**
+     * Reads files concurrently and feeds their valid rows to sink in batches. Rejected
+     * lines go to report. Returns once every file has been read and merged.
+     */
+    void importFiles(List<Path> files, Report report, BatchSink sink) throws Exception {
+        if (files.isEmpty()) return;
+        BlockingQueue<List<Row>> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+        AtomicInteger remaining = new AtomicInteger(files.size());
+        ExecutorService readers = Executors.newFixedThreadPool(Math.min(threads, files.size()), r -> {
+            Thread t = new Thread(r, "grade-import");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (Path file : files) {
+                readers.submit(() -> {
+                    try {
+                        read(file, queue, report);
+                    } catch (IOException | UncheckedIOException e) {
+                        report.reject(file, 0, "Could not read file: " + e.getMessage(), "");
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) queue.put(END);
+                    }
+                    return null;
+                });
+            }
+            while (true) {
+                List<Row> batch = queue.take();
+                if (batch == END) break;
+                sink.accept(batch);
+            }
+        } finally {
+            // Unblocks readers stuck on a full queue if the sink failed
+            readers.shutdownNow();
+        }
+    }
+
+    private void read(Path file, BlockingQueue<List<Row>> queue, Report report) throws IOException, InterruptedException {
+        report.files.increment();
+        List<Row> batch = new ArrayList<>(BATCH_ROWS);
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String text;
+            int line = 0;
+            while ((text = in.readLine()) != null) {
+                line++;
+                if (line == 1 && isHeader(text)) continue;
+                if (text.isBlank()) continue;
+                report.linesRead.increment();
+                Row row = parse(file, line, text, report);
+                if (row == null) continue;
+                batch.add(row);
+                if (batch.size() == BATCH_ROWS) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(BATCH_ROWS);
+                }
+            }
+        }
+        if (!batch.isEmpty()) queue.put(batch);
+    }
+
+    private static boolean isHeader(String text) {
+        return text.replace(" ", "").equalsIgnoreCase(GradeStore.CSV_HEADER);
+    }
+
+    /**
+     * Validates one line, reporting it and returning null if it is rejected.
+     */
+    private Row parse(Path file, int line, String text, Report report) {
+        String[] fields = text.split(",", -1);
+        if (fields.length != 6) {
+            report.reject(file, line, "Expected 6 columns, found " + fields.length, text);
+            return null;
+        }
+        for (int f = 0; f < fields.length; f++) {
+            fields[f] = fields[f].trim();
+        }
+        String reason = null;
+        int score = 0;
+        int outOf = 0;
+        int epochDay = 0;
+        if (fields[0].isEmpty()) {
+            reason = "Missing assignment name";
+        } else if (fields[1].isEmpty()) {
+            reason = "Missing subject";
+        } else if (!categories.contains(fields[2])) {
+            reason = "Unknown category '" + fields[2] + "'";
+        } else {
+            try {
+                score = Integer.parseInt(fields[3]);
+                outOf = Integer.parseInt(fields[4]);
+                if (outOf <= 0) reason = "Out Of must be positive";
+            } catch (NumberFormatException e) {
+                reason = "Score and Out Of must be integers";
+            }
+            if (reason == null) {
+                try {
+                    epochDay = (int) LocalDate.parse(fields[5]).toEpochDay();
+                } catch (DateTimeParseException e) {
+                    reason = "Date must be in YYYY-MM-DD format";
+                }
+            }
+        }
+        if (reason != null) {
+            report.reject(file, line, reason, text);
+            return null;
+        }
+        return new Row(fields[0], fields[1], fields[2], score, outOf, epochDay, file, line, text);
+    }
+
+    // ---------------- Merging ----------------
+
+    /**
+     * Adds batches to a store, skipping rows whose (name, subject, date) it already has.
+     * Keys for a subject are collected from its rows the first time the import touches it
+     * and kept up to date as rows are added. Use on the thread that owns the store.
+     */
+    static final class Merger {
+        private final GradeStore store;
+        // Per subject id: (assignment id << 32 | epoch day) of every row
+        private final Map<Integer, Set<Long>> keysBySubject = new HashMap<>();
+        private final Set<String> changed = new LinkedHashSet<>();
+
+        Merger(GradeStore store) {
+            this.store = store;
+        }
+
+        /**
+         * Adds the batch's new rows, calling added with the subject after each one (the
+         * new row is its last), and reports duplicates.
+         */
+        void merge(List<Row> batch, Report report, Consumer<GradeStore.SubjectGrades> added) {
+            for (Row row : batch) {
+                GradeStore.SubjectGrades grades = store.subject(row.subject);
+                int nameId = store.findAssignmentId(row.name);
+                if (grades != null && nameId >= 0 && keys(grades).contains(key(nameId, row.epochDay))) {
+                    report.duplicate(row);
+                    continue;
+                }
+                store.add(row.name, row.subject, row.category, row.score, row.outOf, row.epochDay);
+                grades = store.subject(row.subject);
+                keys(grades).add(key(grades.nameId(grades.size() - 1), row.epochDay));
+                changed.add(grades.subject);
+                report.imported.increment();
+                added.accept(grades);
+            }
+        }
+
+        private Set<Long> keys(GradeStore.SubjectGrades grades) {
+            Set<Long> keys = keysBySubject.get(grades.id);
+            if (keys == null) {
+                keys = new HashSet<>(Math.max(16, grades.size() * 2));
+                // The row just added by merge() is included here and re-added harmlessly
+                for (int row = 0; row < grades.size(); row++) {
+                    keys.add(key(grades.nameId(row), grades.epochDay(row)));
+                }
+                keysBySubject.put(grades.id, keys);
+            }
+            return keys;
+        }
+
+        private static long key(int nameId, int epochDay) {
+            return ((long) nameId << 32) | (epochDay & 0xFFFFFFFFL);
+        }
+
+        /** Subjects that received rows, in the order they were first touched. */
+        Set<String> changedSubjects() {
+            return changed;
+        }
+    }
+
+    // ---------------- Report ----------------
+
+    /**
+     * Counters for one import and a CSV of every line that was not imported
+     * (File,Line,Reason,Text). Safe to use from all reader threads.
+     */
+    static final class Report implements Closeable {
+        final Path path;
+        final LongAdder files = new LongAdder();
+        final LongAdder linesRead = new LongAdder();
+        final LongAdder imported = new LongAdder();
+        final LongAdder duplicates = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        private final BufferedWriter out;
+        private final long start = System.nanoTime();
+
+        Report(Path path) throws IOException {
+            this.path = path;
+            this.out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            out.write("File,Line,Reason,Text\n");
+        }
+
+        void reject(Path file, int line, String reason, String text) {
+            rejected.increment();
+            write(file, line, reason, text);
+        }
+
+        void duplicate(Row row) {
+            duplicates.increment();
+            write(row.file, row.line, "Duplicate of an existing grade with the same name, subject and date", row.text);
+        }
+
+        private synchronized void write(Path file, int line, String reason, String text) {
+            try {
+                out.write(BatchGrader.csvField(file.toString()) + "," + line + "," + BatchGrader.csvField(reason) + ","
+                        + BatchGrader.csvField(text) + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        String summary() {
+            double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+            return String.format(Locale.ROOT,
+                    "Imported %,d of %,d row(s) from %d file(s) in %.2f s.%n%,d duplicate(s) and %,d rejected line(s) are listed in %s.",
+                    imported.sum(), linesRead.sum(), files.sum(), seconds, duplicates.sum(), rejected.sum(), path);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // ---------------- Command line ----------------
+
+    /**
+     * Entry point for "grading import ...": merges the files into the gradebook through its
+     * journal and compacts once at the end. Returns the process exit code.
+     */
+    static int run(String[] args) {
+        List<Path> files = new ArrayList<>();
+        Path into = Path.of(grading.CSV_FILE);
+        Path weightsFile = Path.of(grading.WEIGHTS_FILE);
+        Path reportFile = Path.of("import-report.csv");
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--into" -> into = Path.of(args[++i]);
+                    case "--weights" -> weightsFile = Path.of(args[++i]);
+                    case "--report" -> reportFile = Path.of(args[++i]);
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    default -> {
+                        // A misspelt option must not be imported as a file
+                        if (args[i].startsWith("--")) throw new IllegalArgumentException(args[i]);
+                        files.add(Path.of(args[i]));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            files.clear();
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: java grading import <file>... [--into <csv>] [--weights <file>] [--report <file>] [--threads <n>]");
+            return 2;
+        }
+
+        GradeJournal journal = new GradeJournal(into);
+        try (Report report = new Report(reportFile)) {
+            WeightConfig weights = WeightConfig.load(weightsFile);
+            journal.recover();
+            GradeStore store = journal.loadStore();
+            Merger merger = new Merger(store);
+            StringBuilder line = new StringBuilder(64);
+            AtomicReference<Throwable> journalError = new AtomicReference<>();
+            new GradeImporter(weights, threads).importFiles(files, report, batch ->
+                    merger.merge(batch, report, grades -> {
+                        line.setLength(0);
+                        store.appendCsvRow(line, grades, grades.size() - 1);
+                        journal.append(line.toString()).whenComplete((v, err) -> {
+                            if (err != null) journalError.compareAndSet(null, err);
+                        });
+                    }));
+            if (report.imported.sum() > 0) {
+                // One fold into the CSV for the whole import
+                journal.compact(store).join();
+            }
+            if (journalError.get() != null) throw new IOException("Could not journal imported rows", journalError.get());
+            Diagnostics.recordRows(report.imported.sum(), report.rejected.sum());
+            System.err.println(report.summary());
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Import failed: " + e.getMessage());
+            return 1;
+        } finally {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,573 @@
+/* GradeJournal.java
+   Append-only write-ahead journal for gradeinput.csv with background compaction.
+*/
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * New grades are appended to "<csv>.journal" instead of rewriting the whole CSV.
+ * A writer thread drains the queue and fsyncs once per batch (group commit), so many
+ * adds share one force(). Compaction rolls the active journal into a numbered segment
+ * and appends the segments' rows to the end of the CSV. The CSV is never rewritten or
+ * replaced, since grades are only ever added: rows another program appends to it stay
+ * where they are, and a writer holding the file open keeps writing to the same file.
+ * Such a writer must open the file in append mode (or reopen it for each append) and
+ * write whole lines, as compaction appends too. A binary {@link GradeSnapshot} of the same rows is written
+ * after a compaction when nothing else was appended in between.
+ *
+ * Before appending, compaction records in "<csv>.folded" the last segment it folds in
+ * and the size of the CSV at that point. On startup the journal is replayed on top of
+ * the CSV; segments up to the recorded one are skipped (and deleted) only if their rows
+ * follow that offset in the CSV, i.e. the append completed. An append cut short by a
+ * crash is removed again and its segments are replayed.
+ */
+final class GradeJournal implements Closeable {
+
+    // Fold the journal into the CSV once this many rows have been appended
+    private static final int COMPACT_AFTER_ROWS = 1000;
+    // How long a compaction waits for another program to finish the CSV line it is writing
+    private static final int PARTIAL_LINE_MILLIS = 1000;
+
+    private final Path csvFile;
+    private final Path journalFile;
+    private final Path foldedFile;
+    private final BlockingQueue<Entry> pending = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "grade-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Owned by the writer thread
+    private FileChannel channel;
+    private ByteBuffer batchBuffer = ByteBuffer.allocate(8192);
+
+    // Owned by the thread that appends (the EDT in the app)
+    private long nextSegment;
+    private int rowsSinceCompaction;
+    // Bytes of the CSV a store from loadStore() holds, kept up by compactions; -1 if unknown
+    private volatile long csvLoaded = -1;
+
+    /**
+     * A queued row, segment roll or shutdown request.
+     */
+    private static class Entry {
+        final byte[] row;
+        final Path rollTo;
+        final boolean stop;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(byte[] row, Path rollTo, boolean stop) {
+            this.row = row;
+            this.rollTo = rollTo;
+            this.stop = stop;
+        }
+    }
+
+    GradeJournal(Path csvFile) {
+        this.csvFile = csvFile;
+        this.journalFile = csvFile.resolveSibling(csvFile.getFileName() + ".journal");
+        this.foldedFile = csvFile.resolveSibling(csvFile.getFileName() + ".folded");
+        this.nextSegment = 1;
+        this.writer = new Thread(this::writeLoop, "grade-journal");
+        this.writer.setDaemon(true);
+    }
+
+    // ---------------- Replay ----------------
+
+    /**
+     * Cleans up after a crash during a compaction, before the CSV is read: deletes segments
+     * it had already appended to the CSV, or cuts off an append it did not finish so its
+     * segments are replayed instead. Only for the process that compacts; readers just
+     * {@link #replay}, which leaves the files alone.
+     */
+    void recover() throws IOException {
+        TreeMap<Long, Path> segments = segments();
+        String[] marker = readMarker();
+        long folded = marker == null ? 0 : Long.parseLong(marker[0]);
+        if (folded > 0 && !segments.isEmpty() && segments.firstKey() <= folded
+                && foldCompleted(Long.parseLong(marker[1]), segments.headMap(folded, true).values(), true)) {
+            for (Path segment : segments.headMap(folded, true).values()) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    /**
+     * Appends journalled rows that are not yet in the CSV to the store and starts the writer.
+     * Returns the number of rows replayed.
+     */
+    int replay(GradeStore store) throws IOException {
+        int replayed = 0;
+
+        TreeMap<Long, Path> segments = segments();
+        String[] marker = readMarker();
+        long folded = marker == null ? 0 : Long.parseLong(marker[0]);
+        if (folded > 0 && !segments.isEmpty() && segments.firstKey() <= folded
+                && foldCompleted(Long.parseLong(marker[1]), segments.headMap(folded, true).values(), false)) {
+            // Folded in before a crash that left the segments behind
+            segments.headMap(folded, true).clear();
+        }
+        for (Path segment : segments.values()) {
+            replayed += CsvGradeLoader.loadJournal(segment, store).rowsLoaded;
+        }
+        // Never reuse a number the marker covers, even once its segment is gone
+        nextSegment = Math.max(folded, segments.isEmpty() ? 0 : segments.lastKey()) + 1;
+        if (Files.exists(journalFile)) {
+            replayed += CsvGradeLoader.loadJournal(journalFile, store).rowsLoaded;
+        }
+
+        rowsSinceCompaction = replayed;
+        writer.start();
+        return replayed;
+    }
+
+    /**
+     * Loads the gradebook for headless use: the binary snapshot if it matches the CSV,
+     * otherwise the CSV itself (or nothing), then replays this journal on top and builds
+     * the date indexes. Starts the writer like {@link #replay}. A process that will
+     * compact calls {@link #recover} first.
+     */
+    GradeStore loadStore() throws IOException {
+        // Measured first: the snapshot is only used if it matches the CSV at this size
+        long size = Files.exists(csvFile) ? Files.size(csvFile) : 0;
+        GradeStore store = GradeSnapshot.load(csvFile);
+        if (store != null) {
+            Diagnostics.recordRows(store.rowCount(), 0);
+            csvLoaded = size;
+        } else if (Files.exists(csvFile)) {
+            CsvGradeLoader.LoadResult result = CsvGradeLoader.load(csvFile);
+            store = result.store;
+            csvLoaded = result.end;
+        } else {
+            store = new GradeStore();
+            csvLoaded = 0;
+        }
+        replay(store);
+        store.indexDates();
+        return store;
+    }
+
+    /**
+     * True if the segments' rows were appended to the CSV at or after from, i.e. the
+     * compaction that wrote the marker finished. With cutShort, an append it did not
+     * finish is removed from the CSV, so the segments are replayed and folded again.
+     */
+    private boolean foldCompleted(long from, Collection<Path> folded, boolean cutShort) throws IOException {
+        if (!Files.exists(csvFile)) return false;
+        byte[] rows = concat(folded);
+        try (FileChannel in = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            return in.size() >= from && find(in, from, rows, cutShort) >= 0;
+        }
+    }
+
+    /** The marker's fields {segment, CSV size before the fold}, or null if there is none. */
+    private String[] readMarker() throws IOException {
+        if (!Files.exists(foldedFile)) return null;
+        String[] fields = Files.readString(foldedFile, StandardCharsets.UTF_8).trim().split(" ");
+        if (fields.length != 2) throw new IOException("Unreadable journal marker " + foldedFile);
+        return fields;
+    }
+
+    private TreeMap<Long, Path> segments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        Path dir = journalFile.toAbsolutePath().getParent();
+        String prefix = journalFile.getFileName() + ".";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path p : stream) {
+                try {
+                    segments.put(Long.parseLong(p.getFileName().toString().substring(prefix.length())), p);
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return segments;
+    }
+
+    // ---------------- Appending ----------------
+
+    /**
+     * Queues one CSV row (without newline). The future completes once it is on disk.
+     */
+    CompletableFuture<Void> append(String row) {
+        rowsSinceCompaction++;
+        return enqueue(new Entry((row + "\n").getBytes(StandardCharsets.UTF_8), null, false));
+    }
+
+    /**
+     * True once enough rows have been journalled that a compaction is worthwhile.
+     */
+    boolean needsCompaction() {
+        return rowsSinceCompaction >= COMPACT_AFTER_ROWS;
+    }
+
+    private CompletableFuture<Void> enqueue(Entry entry) {
+        pending.add(entry);
+        return entry.done;
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            batch.clear();
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            pending.drainTo(batch);
+
+            try {
+                batchBuffer.clear();
+                for (Entry entry : batch) {
+                    if (entry.row != null) {
+                        bufferRow(entry.row);
+                    } else if (entry.rollTo != null) {
+                        flushBatch();
+                        roll(entry.rollTo);
+                    } else if (entry.stop) {
+                        running = false;
+                    }
+                }
+                flushBatch();
+                for (Entry entry : batch) entry.done.complete(null);
+            } catch (IOException | RuntimeException e) {
+                for (Entry entry : batch) entry.done.completeExceptionally(e);
+            }
+        }
+        closeChannel();
+    }
+
+    private void bufferRow(byte[] row) {
+        if (batchBuffer.remaining() < row.length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(batchBuffer.capacity() * 2, batchBuffer.position() + row.length));
+            batchBuffer.flip();
+            bigger.put(batchBuffer);
+            batchBuffer = bigger;
+        }
+        batchBuffer.put(row);
+    }
+
+    /**
+     * Writes the buffered rows and forces them to disk with a single fsync.
+     */
+    private void flushBatch() throws IOException {
+        if (batchBuffer.position() == 0) return;
+        long start = System.nanoTime();
+        batchBuffer.flip();
+        int bytes = batchBuffer.remaining();
+        FileChannel ch = openChannel();
+        while (batchBuffer.hasRemaining()) {
+            ch.write(batchBuffer);
+        }
+        ch.force(false);
+        batchBuffer.clear();
+        Diagnostics.recordBytesWritten(bytes);
+        Diagnostics.JOURNAL_FLUSH.record(start);
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Drop a torn last line left by a crash so new rows start on a fresh line
+            channel.truncate(CsvGradeLoader.completeLinesEnd(channel));
+            channel.position(channel.size());
+        }
+        return channel;
+    }
+
+    private void roll(Path segment) throws IOException {
+        closeChannel();
+        if (Files.exists(journalFile)) {
+            Files.move(journalFile, segment, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+
+    // ---------------- Compaction ----------------
+
+    /**
+     * Where one compaction appended its rows to the CSV: bytes [start, end), which hold
+     * exactly the journalled rows it folded. start == end if there was nothing to fold.
+     */
+    static final class Folded {
+        final long start;
+        final long end;
+
+        Folded(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Folds everything journalled so far into the CSV in the background. Must be called
+     * on the thread that appends, so the frozen rows and the rolled segment cover exactly
+     * the same grades. For a store from {@link #loadStore}, which knows how much of the
+     * CSV it holds.
+     */
+    CompletableFuture<Folded> compact(GradeStore store) {
+        return compact(store, csvLoaded);
+    }
+
+    /**
+     * Like compact(store), where store holds the first csvCovered bytes of the CSV (-1 if
+     * unknown). The rolled segments are appended to the end of the CSV, which is never
+     * replaced: rows other programs append are left where they are. The binary snapshot
+     * is rewritten only if nothing but the folded rows follows csvCovered.
+     */
+    CompletableFuture<Folded> compact(GradeStore store, long csvCovered) {
+        GradeStore.Frozen frozen = store.publish();
+        long segment = nextSegment++;
+        rowsSinceCompaction = 0;
+
+        Path segmentFile = journalFile.resolveSibling(journalFile.getFileName() + "." + segment);
+        return enqueue(new Entry(null, segmentFile, false))
+                .thenApplyAsync(v -> {
+                    try {
+                        return fold(frozen, segment, csvCovered);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, compactor);
+    }
+
+    private Folded fold(GradeStore.Frozen frozen, long segment, long csvCovered) throws IOException {
+        long start = System.nanoTime();
+        SortedMap<Long, Path> folding = segments().headMap(segment, true);
+        byte[] rows = concat(folding.values());
+        if (createCsv() && csvCovered == 0) {
+            // The store held all of the missing file; now there is a header before its rows
+            csvCovered = Files.size(csvFile);
+        }
+
+        Folded folded;
+        long size;
+        long modified;
+        try (FileChannel in = FileChannel.open(csvFile, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(csvFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long from = settledSize(in);
+            if (rows.length == 0) {
+                folded = new Folded(from, from);
+            } else {
+                // Recorded first, so a fold cut short by a crash can be found and undone
+                writeMarker(foldedFile, segment + " " + from + "\n");
+                // A last line without a newline must not run into the first folded row
+                boolean newline = from > 0 && lastByte(in, from) != '\n';
+                ByteBuffer buf = ByteBuffer.allocate(rows.length + (newline ? 1 : 0));
+                if (newline) buf.put((byte) '\n');
+                buf.put(rows).flip();
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+                out.force(true);
+                Diagnostics.recordBytesWritten(rows.length);
+                // Normally at from; later if another program appended in between
+                long at = find(in, from, rows, false);
+                if (at < 0) throw new IOException("Folded rows not found in " + csvFile);
+                folded = new Folded(at, at + rows.length);
+            }
+            size = in.size();
+            modified = Files.getLastModifiedTime(csvFile).toMillis();
+        }
+        for (Path p : folding.values()) {
+            Files.deleteIfExists(p);
+        }
+        if (folded.start == csvCovered && folded.end == size) {
+            GradeSnapshot.write(frozen, csvFile, size, modified);
+            csvLoaded = size;
+        } else {
+            csvLoaded = -1;
+        }
+        Diagnostics.SAVE.record(start);
+        return folded;
+    }
+
+    /** Creates the CSV with just its header if it does not exist yet. True if it did. */
+    private boolean createCsv() throws IOException {
+        if (Files.exists(csvFile)) return false;
+        Path tmp = csvFile.resolveSibling(csvFile.getFileName() + ".tmp");
+        Files.writeString(tmp, GradeStore.CSV_HEADER + "\n", StandardCharsets.UTF_8);
+        try {
+            Files.move(tmp, csvFile, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            // Created by another program meanwhile; append to that one
+            Files.deleteIfExists(tmp);
+            return false;
+        }
+    }
+
+    private static byte[] concat(Collection<Path> files) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Path p : files) {
+            bytes.write(Files.readAllBytes(p));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The file's size, once it ends in a complete line: another program appending a row
+     * is given up to PARTIAL_LINE_MILLIS to finish it, so the fold does not split it.
+     */
+    private static long settledSize(FileChannel in) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PARTIAL_LINE_MILLIS);
+        while (true) {
+            long size = in.size();
+            if (size == 0 || lastByte(in, size) == '\n' || System.nanoTime() > deadline) return size;
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return in.size();
+            }
+        }
+    }
+
+    static byte lastByte(FileChannel in, long size) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        in.read(one, size - 1);
+        return one.get(0);
+    }
+
+    /**
+     * The offset of the first line at or after from where the file holds exactly rows,
+     * or -1. If instead the file ends in a proper prefix of rows (a fold cut short) and
+     * cutShort is set, that prefix is cut off.
+     */
+    private long find(FileChannel channel, long from, byte[] rows, boolean cutShort) throws IOException {
+        long size = channel.size();
+        if (size - from > Integer.MAX_VALUE - 8) throw new IOException("Too much appended to " + csvFile);
+        ByteBuffer buf = ByteBuffer.allocate((int) (size - from));
+        while (buf.hasRemaining() && channel.read(buf, from + buf.position()) > 0) {
+            // Keep reading
+        }
+        byte[] tail = Arrays.copyOf(buf.array(), buf.position());
+        for (int p = 0; p <= tail.length; p++) {
+            if (p > 0 && tail[p - 1] != '\n') continue;
+            int n = Math.min(rows.length, tail.length - p);
+            if (!Arrays.equals(tail, p, p + n, rows, 0, n)) continue;
+            if (n == rows.length) return from + p;
+            if (n > 0 && cutShort) {
+                try (FileChannel out = FileChannel.open(csvFile, StandardOpenOption.WRITE)) {
+                    out.truncate(from + p);
+                    out.force(true);
+                }
+            }
+            return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces csvFile with the frozen rows (temp file, fsync, atomic rename) and writes
+     * the matching binary snapshot next to it. Returns the size of the CSV. Only for a
+     * file no other program appends to; the journal folds into its CSV in place.
+     * Refuses a store that skipped lines of its file, since the rewrite would drop them.
+     */
+    static long writeCsv(GradeStore.Frozen frozen, Path csvFile) throws IOException {
+        if (frozen.skippedLines > 0) {
+            throw new IOException(frozen.skippedLines + " line(s) of " + csvFile
+                    + " could not be read and would be lost by rewriting it; fix or remove them first");
+        }
+        long start = System.nanoTime();
+        long size;
+        Path tmp = csvFile.resolveSibling(csvFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedWriter w = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(out), StandardCharsets.UTF_8), 1 << 16);
+            frozen.writeCsv(w);
+            w.flush();
+            out.force(true);
+            size = out.size();
+            Diagnostics.recordBytesWritten(size);
+        }
+        // The rename keeps this time; read from the temp file, so rows appended to the
+        // CSV afterwards make the snapshot stale instead of being claimed
+        long modified = Files.getLastModifiedTime(tmp).toMillis();
+        Files.move(tmp, csvFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        GradeSnapshot.write(frozen, csvFile, size, modified);
+        Diagnostics.SAVE.record(start);
+        return size;
+    }
+
+    private static void writeMarker(Path foldedFile, String text) throws IOException {
+        Path tmp = foldedFile.resolveSibling(foldedFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+            out.force(true);
+        }
+        Files.move(tmp, foldedFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Writes a binary snapshot of the store in the background, for when the CSV was
+     * loaded directly and no compaction is pending. csvSize and csvModified describe the
+     * CSV the store was read from. Call on the appending thread.
+     */
+    CompletableFuture<Void> refreshSnapshot(GradeStore store, long csvSize, long csvModified) {
+        GradeStore.Frozen frozen = store.publish();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                GradeSnapshot.write(frozen, csvFile, csvSize, csvModified);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, compactor);
+    }
+
+    /**
+     * Waits for queued rows and running compactions, then stops the background threads.
+     */
+    @Override
+    public void close() {
+        if (!writer.isAlive()) return;
+        enqueue(new Entry(null, null, true)).join();
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,551 @@
+/* GradeServer.java
+   Read-only local HTTP/JSON API over the gradebook, on virtual threads.
+   Usage: java grading serve [--port <n>] [--bind <address>] [--file <csv>] [--weights <file>] [--roster <dir>]
+*/
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the gradebook as JSON so other tools can poll it without the Swing window:
+ *
+ * <pre>
+ *   GET /subjects                          every subject with its final grade and letter
+ *   GET /letters                           subject -> letter grade
+ *   GET /subjects/{subject}/summary        the numbers the summary panel shows
+ *   GET /subjects/{subject}/chart[?points=N]  progress series by date (LTTB-sampled to N, default 1000)
+ * </pre>
+ *
+ * With --roster, the per-student gradebooks in that directory (one {@code <id>.csv}
+ * each, as for {@link BatchGrader}) are served too, through a {@link GradebookRegistry}
+ * so only the recently used ones stay loaded:
+ *
+ * <pre>
+ *   GET /students                          student ids and the gradebook cache counters
+ *   GET /students/{id}/...                 the routes above for that student's gradebook
+ * </pre>
+ *
+ * Each loaded gradebook is an immutable {@link State}: the store is never written after
+ * loading, so any number of handler threads read it without locking. Responses are
+ * rendered once per state and cached by request path. A subject's ETag is a hash of
+ * its rows (names, categories, scores and dates in stored order) and of its weight
+ * scheme's rules; whole-book responses hash every subject's. An edit therefore only
+ * changes the ETags of the subject it touched, and a reload of unchanged data keeps
+ * them, so a repeat poll with If-None-Match is a map lookup and a 304.
+ *
+ * The server checks the CSV, journal and weights files every {@link #RELOAD_MILLIS} ms
+ * and swaps in a freshly loaded state when any of them changed.
+ */
+final class GradeServer {
+
+    private static final int RELOAD_MILLIS = 2000;
+    private static final int DEFAULT_CHART_POINTS = 1000;
+    private static final int MAX_CHART_POINTS = 10_000;
+    // Pending connections the kernel may queue while every handler is busy
+    private static final int BACKLOG = 4096;
+    private static final int MAX_IDLE_CONNECTIONS = 10_000;
+
+    private final Path csvFile;
+    private final Path weightsFile;
+    // Per-student gradebooks, or null without --roster
+    private final Path rosterDir;
+    private final GradebookRegistry roster;
+    // Response cache per student gradebook; weak, so it goes when the registry drops the gradebook
+    private final Map<GradebookRegistry.Gradebook, State> students = Collections.synchronizedMap(new WeakHashMap<>());
+    private volatile State state;
+
+    private GradeServer(Path csvFile, Path weightsFile, Path rosterDir) {
+        this.csvFile = csvFile;
+        this.weightsFile = weightsFile;
+        this.rosterDir = rosterDir;
+        this.roster = rosterDir == null ? null : new GradebookRegistry(rosterDir);
+    }
+
+    /**
+     * Entry point for "grading serve ...". Blocks until the process is stopped.
+     */
+    static int run(String[] args) {
+        int port = 8080;
+        String bind = "127.0.0.1";
+        Path file = Path.of(grading.CSV_FILE);
+        Path weightsFile = Path.of(grading.WEIGHTS_FILE);
+        Path rosterDir = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port" -> port = Integer.parseInt(args[++i]);
+                    case "--bind" -> bind = args[++i];
+                    case "--file" -> file = Path.of(args[++i]);
+                    case "--weights" -> weightsFile = Path.of(args[++i]);
+                    case "--roster" -> rosterDir = Path.of(args[++i]);
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+            if (rosterDir != null && !Files.isDirectory(rosterDir)) throw new IllegalArgumentException(rosterDir.toString());
+        } catch (RuntimeException e) {
+            System.err.println("Usage: java grading serve [--port <n>] [--bind <address>] [--file <csv>] [--weights <file>] [--roster <dir>]");
+            return 2;
+        }
+
+        GradeServer server = new GradeServer(file, weightsFile, rosterDir);
+        try {
+            server.state = server.load();
+        } catch (IOException e) {
+            System.err.println("Could not load " + file + ": " + e.getMessage());
+            return 1;
+        }
+
+        // The JDK server closes keep-alive connections beyond 200 idle ones by default, which
+        // makes every poller past the 200th reconnect; must be set before the server class loads
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        }
+        ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            HttpServer http = HttpServer.create(new InetSocketAddress(bind, port), BACKLOG);
+            http.createContext("/", server::handle);
+            http.setExecutor(handlers);
+            http.start();
+        } catch (IOException e) {
+            System.err.println("Could not listen on " + bind + ":" + port + ": " + e.getMessage());
+            return 1;
+        }
+        Diagnostics.register();
+        System.err.printf(Locale.ROOT, "Serving %s (%d rows, %d subjects) on http://%s:%d/%n",
+                file, server.state.store.rowCount(), server.state.store.subjectCount(), bind, port);
+
+        server.watchFiles();
+        return 0;
+    }
+
+    // ---------------- Loading ----------------
+
+    /**
+     * One loaded gradebook. Nothing here is modified after construction apart from the caches.
+     */
+    private static final class State {
+        final GradeStore store;
+        // The store's version() when this state was made
+        final long version;
+        final WeightConfig weights;
+        final Fingerprint files;
+        // Rendered responses by request path (and query)
+        final Map<String, Response> responses = new ConcurrentHashMap<>();
+        // Not thread-safe; guarded by its own monitor
+        final ChartSeriesCache chartSeries = new ChartSeriesCache();
+        // ETag hash of each subject's rows, computed on first use
+        final Map<String, Long> rowHashes = new ConcurrentHashMap<>();
+
+        State(GradeStore store, WeightConfig weights, Fingerprint files) {
+            this.store = store;
+            this.version = store.version();
+            this.weights = weights;
+            this.files = files;
+        }
+    }
+
+    /**
+     * Size and modification time of every input file, to notice changes cheaply.
+     */
+    private record Fingerprint(long[] values) {
+        static Fingerprint of(Path... files) throws IOException {
+            long[] values = new long[files.length * 2];
+            for (int i = 0; i < files.length; i++) {
+                if (Files.exists(files[i])) {
+                    values[2 * i] = Files.size(files[i]);
+                    values[2 * i + 1] = Files.getLastModifiedTime(files[i]).toMillis();
+                } else {
+                    values[2 * i] = -1;
+                }
+            }
+            return new Fingerprint(values);
+        }
+
+        boolean sameAs(Fingerprint other) {
+            return Arrays.equals(values, other.values);
+        }
+    }
+
+    private Fingerprint fingerprint() throws IOException {
+        return Fingerprint.of(csvFile, csvFile.resolveSibling(csvFile.getFileName() + ".journal"), weightsFile);
+    }
+
+    /**
+     * Loads the snapshot (or CSV) plus journalled rows, the same way the app does on startup.
+     */
+    private State load() throws IOException {
+        long start = System.nanoTime();
+        Fingerprint files = fingerprint();
+        WeightConfig weights = WeightConfig.load(weightsFile);
+
+        // Builds every lazy index too, so readers never mutate the store
+        GradeStore store;
+        GradeJournal journal = new GradeJournal(csvFile);
+        try {
+            store = journal.loadStore();
+        } finally {
+            journal.close();
+        }
+        Diagnostics.setStoreBytes(store.estimatedBytes());
+        Diagnostics.LOAD.record(start);
+        return new State(store, weights, files);
+    }
+
+    /**
+     * Polls the input files and reloads when they change. Runs on the calling thread forever.
+     */
+    private void watchFiles() {
+        while (true) {
+            try {
+                Thread.sleep(RELOAD_MILLIS);
+                if (!fingerprint().sameAs(state.files)) {
+                    state = load();
+                    System.err.printf(Locale.ROOT, "Reloaded %s (%d rows)%n", csvFile, state.store.rowCount());
+                }
+            } catch (IOException e) {
+                // Keep serving the last good state; a half-written file is retried next round
+                System.err.println("Reload failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // ---------------- Requests ----------------
+
+    /**
+     * A rendered body with its ETag, or an error status.
+     */
+    private record Response(int status, String etag, byte[] body) {
+        static Response error(int status, String message) {
+            StringBuilder sb = new StringBuilder("{\"error\":");
+            BatchGrader.appendJsonString(sb, message);
+            sb.append("}\n");
+            return new Response(status, null, sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                send(exchange, Response.error(405, "Only GET is supported"));
+                return;
+            }
+            State current = state;
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            String key = query == null ? path : path + "?" + query;
+
+            Response response = roster != null && (path.equals("/students") || path.startsWith("/students/"))
+                    ? renderStudent(current, path, query)
+                    : current.responses.get(key);
+            if (response == null) {
+                response = render(current, path, query);
+                // Errors are cheap to rebuild and would otherwise let arbitrary paths grow the cache
+                if (response.status == 200) {
+                    Response raced = current.responses.putIfAbsent(key, response);
+                    if (raced != null) response = raced;
+                }
+            }
+
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (response.etag != null && response.etag.equals(ifNoneMatch)) {
+                exchange.getResponseHeaders().set("ETag", response.etag);
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            send(exchange, response);
+        } finally {
+            Diagnostics.REQUEST.record(start);
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        var headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        if (response.etag != null) {
+            headers.set("ETag", response.etag);
+            headers.set("Cache-Control", "no-cache");
+        }
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(response.status, head ? -1 : response.body.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response.body);
+            }
+        }
+    }
+
+    private static Response render(State state, String path, String query) {
+        if (path.equals("/subjects") || path.equals("/subjects/")) {
+            return ok(etag(bookHash(state), ""), subjectsJson(state));
+        }
+        if (path.equals("/letters")) {
+            return ok(etag(bookHash(state), ""), lettersJson(state));
+        }
+        if (path.startsWith("/subjects/")) {
+            String rest = path.substring("/subjects/".length());
+            int slash = rest.lastIndexOf('/');
+            if (slash > 0) {
+                String subject = rest.substring(0, slash);
+                String view = rest.substring(slash + 1);
+                GradeStore.SubjectGrades grades = state.store.subject(subject);
+                if (grades == null) return Response.error(404, "No grades for subject " + subject);
+                long hash = subjectHash(state, grades);
+                switch (view) {
+                    case "summary":
+                        return ok(etag(hash, ""), summaryJson(summary(state, grades)));
+                    case "chart":
+                        int points = parsePoints(query);
+                        if (points < 0) return Response.error(400, "points must be between 3 and " + MAX_CHART_POINTS);
+                        return ok(etag(hash, "-p" + points), chartJson(state, grades, points));
+                    default:
+                        break;
+                }
+            }
+        }
+        return Response.error(404, "Unknown path " + path);
+    }
+
+    /**
+     * Answers a /students request from the roster. Student gradebooks come from the
+     * registry's cache (loading on a miss) and are rendered under the gradebook's lock,
+     * since a store builds its indexes lazily. Each gradebook has its own State, so its
+     * responses and row hashes are cached until a row is added or the weights change.
+     */
+    private Response renderStudent(State current, String path, String query) {
+        if (path.equals("/students") || path.equals("/students/")) {
+            try {
+                return ok(null, studentsJson(roster.students(), roster.stats()));
+            } catch (IOException e) {
+                return Response.error(500, "Could not list " + rosterDir + ": " + e.getMessage());
+            }
+        }
+        String rest = path.substring("/students/".length());
+        int slash = rest.indexOf('/');
+        String studentId = slash < 0 ? rest : rest.substring(0, slash);
+        if (!GradebookRegistry.isValidStudentId(studentId) || !Files.isRegularFile(rosterDir.resolve(studentId + ".csv"))) {
+            return Response.error(404, "No gradebook for student " + studentId);
+        }
+        String studentPath = slash < 0 ? "/subjects" : rest.substring(slash);
+        try {
+            GradebookRegistry.Gradebook gradebook = roster.get(studentId);
+            String key = query == null ? studentPath : studentPath + "?" + query;
+            return gradebook.read(store -> {
+                State student = students.get(gradebook);
+                if (student == null || student.store != store || student.version != store.version()
+                        || student.weights != current.weights) {
+                    student = new State(store, current.weights, null);
+                    students.put(gradebook, student);
+                }
+                Response response = student.responses.get(key);
+                if (response == null) {
+                    response = render(student, studentPath, query);
+                    if (response.status == 200) student.responses.put(key, response);
+                }
+                return response;
+            });
+        } catch (IOException e) {
+            return Response.error(500, "Could not load gradebook " + studentId + ": " + e.getMessage());
+        }
+    }
+
+    private static Response ok(String etag, StringBuilder json) {
+        json.append('\n');
+        return new Response(200, etag, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String etag(long hash, String suffix) {
+        return "\"" + Long.toHexString(hash) + suffix + "\"";
+    }
+
+    // ---------------- ETags ----------------
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    /**
+     * Hash of the subject's rows and of the rules of the scheme it is graded with, the
+     * inputs of every per-subject response. Uses names rather than store ids, so it
+     * does not depend on the order strings were interned in.
+     */
+    private static long subjectHash(State state, GradeStore.SubjectGrades grades) {
+        long rows = state.rowHashes.computeIfAbsent(grades.subject, s -> {
+            GradeStore.SubjectGrades.Columns c = grades.columns();
+            long h = mix(FNV_OFFSET, grades.subject.hashCode());
+            for (int r = 0; r < c.size; r++) {
+                h = mix(h, state.store.assignmentName(c.nameIds[r]).hashCode());
+                h = mix(h, state.store.categoryName(c.categoryIds[r]).hashCode());
+                h = mix(h, c.scores[r]);
+                h = mix(h, c.outOfs[r]);
+                h = mix(h, c.epochDays[r]);
+            }
+            return h;
+        });
+        WeightScheme scheme = state.weights.forSubject(grades.subject);
+        long h = mix(rows, Arrays.hashCode(scheme.categories));
+        h = mix(h, Arrays.hashCode(scheme.weights));
+        h = mix(h, Arrays.hashCode(scheme.dropLowest));
+        // The scheme name appears in summaries
+        return mix(h, scheme.name.hashCode());
+    }
+
+    /** Hash over every subject, for responses that cover the whole gradebook. */
+    private static long bookHash(State state) {
+        long h = FNV_OFFSET;
+        for (GradeStore.SubjectGrades grades : state.store.subjects()) {
+            h = mix(h, subjectHash(state, grades));
+        }
+        return h;
+    }
+
+    /** The points query parameter, the default if absent, or -1 if invalid. */
+    private static int parsePoints(String query) {
+        if (query == null) return DEFAULT_CHART_POINTS;
+        for (String param : query.split("&")) {
+            if (param.startsWith("points=")) {
+                try {
+                    int points = Integer.parseInt(param.substring("points=".length()));
+                    return points >= 3 && points <= MAX_CHART_POINTS ? points : -1;
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return DEFAULT_CHART_POINTS;
+    }
+
+    private static SubjectSummary summary(State state, GradeStore.SubjectGrades grades) {
+        return SubjectSummary.of(grades, state.weights.forSubject(grades.subject).plan(state.store));
+    }
+
+    // ---------------- JSON ----------------
+
+    private static StringBuilder subjectsJson(State state) {
+        StringBuilder sb = new StringBuilder(128 + 96 * state.store.subjectCount());
+        sb.append("{\"rows\":").append(state.store.rowCount()).append(",\"subjects\":[");
+        boolean first = true;
+        for (GradeStore.SubjectGrades grades : state.store.subjects()) {
+            SubjectSummary s = summary(state, grades);
+            sb.append(first ? "" : ",");
+            first = false;
+            sb.append("{\"name\":");
+            BatchGrader.appendJsonString(sb, grades.subject);
+            sb.append(",\"grades\":").append(grades.size());
+            sb.append(",\"finalGrade\":").append(number(s.finalGrade));
+            sb.append(",\"letter\":");
+            BatchGrader.appendJsonString(sb, s.letterGrade);
+            sb.append('}');
+        }
+        return sb.append("]}");
+    }
+
+    private static StringBuilder studentsJson(List<String> students, GradebookRegistry.Stats stats) {
+        StringBuilder sb = new StringBuilder(256 + 16 * students.size());
+        sb.append("{\"students\":[");
+        for (int i = 0; i < students.size(); i++) {
+            sb.append(i == 0 ? "" : ",");
+            BatchGrader.appendJsonString(sb, students.get(i));
+        }
+        sb.append("],\"cache\":{\"gradebooks\":").append(stats.cached);
+        sb.append(",\"rows\":").append(stats.cachedRows);
+        sb.append(",\"maxRows\":").append(stats.maxRows);
+        sb.append(",\"hits\":").append(stats.hits);
+        sb.append(",\"misses\":").append(stats.misses);
+        sb.append(",\"evictions\":").append(stats.evictions);
+        sb.append(",\"writeBacks\":").append(stats.writeBacks);
+        return sb.append("}}");
+    }
+
+    private static StringBuilder lettersJson(State state) {
+        StringBuilder sb = new StringBuilder(32 + 32 * state.store.subjectCount()).append('{');
+        boolean first = true;
+        for (GradeStore.SubjectGrades grades : state.store.subjects()) {
+            sb.append(first ? "" : ",");
+            first = false;
+            BatchGrader.appendJsonString(sb, grades.subject);
+            sb.append(':');
+            BatchGrader.appendJsonString(sb, summary(state, grades).letterGrade);
+        }
+        return sb.append('}');
+    }
+
+    private static StringBuilder summaryJson(SubjectSummary s) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"subject\":");
+        BatchGrader.appendJsonString(sb, s.subject);
+        sb.append(",\"scheme\":");
+        BatchGrader.appendJsonString(sb, s.scheme.name);
+        sb.append(",\"categories\":[");
+        for (int c = 0; c < s.categories.length; c++) {
+            sb.append(c == 0 ? "" : ",");
+            sb.append("{\"name\":");
+            BatchGrader.appendJsonString(sb, s.categories[c]);
+            sb.append(",\"weight\":").append(number(s.weights[c]));
+            sb.append(",\"count\":").append(s.counts[c]);
+            sb.append(",\"dropped\":").append(s.dropped[c]);
+            // Percentages, as in the summary panel
+            sb.append(",\"average\":").append(number(s.averages[c] * 100.0));
+            sb.append(",\"contribution\":").append(number(s.counts[c] > 0 ? s.contributions[c] : Double.NaN));
+            sb.append('}');
+        }
+        sb.append("],\"weightUsed\":").append(number(s.totalCategoryWeightUsed));
+        sb.append(",\"finalGrade\":").append(number(s.finalGrade));
+        sb.append(",\"letter\":");
+        BatchGrader.appendJsonString(sb, s.letterGrade);
+        return sb.append('}');
+    }
+
+    private static StringBuilder chartJson(State state, GradeStore.SubjectGrades grades, int maxPoints) {
+        WeightScheme.Plan plan = state.weights.forSubject(grades.subject).plan(state.store);
+        StringBuilder sb;
+        synchronized (state.chartSeries) {
+            ChartSeriesCache.Series series = state.chartSeries.get(state.store, grades, plan);
+            int[] points = ChartSeriesCache.downsample(series.percents(), series.size(), maxPoints);
+            sb = new StringBuilder(64 + 96 * points.length);
+            sb.append("{\"subject\":");
+            BatchGrader.appendJsonString(sb, grades.subject);
+            sb.append(",\"total\":").append(series.size());
+            sb.append(",\"points\":[");
+            for (int i = 0; i < points.length; i++) {
+                int p = points[i];
+                sb.append(i == 0 ? "" : ",");
+                sb.append("{\"label\":");
+                BatchGrader.appendJsonString(sb, series.label(p));
+                sb.append(",\"date\":\"").append(GradeStore.isoDate(series.epochDay(p))).append('"');
+                sb.append(",\"percent\":").append(number(series.percent(p)));
+                sb.append(",\"trend\":").append(number(series.trend(p)));
+                sb.append('}');
+            }
+        }
+        return sb.append("]}");
+    }
+
+    /** Two decimals, or null for NaN (JSON has no NaN). */
+    private static String number(double value) {
+        return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.2f", value);
+    }
+}
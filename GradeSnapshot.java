@@ -0,0 +1,301 @@
+/* GradeSnapshot.java
+   Versioned binary snapshot of the grade store, written next to gradeinput.csv.
+*/
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary image of a {@link GradeStore} so startup can skip CSV parsing.
+ *
+ * Layout (little-endian):
+ *   header   magic, version, csvSize (long), csvModified (long), rowCount,
+ *            assignment/category/subject table sizes
+ *   tables   assignment names, category names, subject names; each entry is a
+ *            length-prefixed UTF-8 string, padded to 4 bytes at the end
+ *   subjects per subject: subject index, row count, then the nameId, categoryId,
+ *            score, outOf and epochDay columns as fixed-width ints
+ *
+ * The snapshot records the size and modification time of the CSV it was built from.
+ * If the CSV no longer matches (edited by hand, replaced by an export) the snapshot
+ * is ignored and the CSV is parsed instead.
+ */
+final class GradeSnapshot {
+
+    private static final int MAGIC = 0x53445247; // "GRDS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4;
+    private static final int COLUMNS = 5;
+
+    private GradeSnapshot() {
+    }
+
+    static Path pathFor(Path csvFile) {
+        return csvFile.resolveSibling(csvFile.getFileName() + ".snap");
+    }
+
+    // ---------------- Reading ----------------
+
+    /**
+     * Reads the snapshot for csvFile into a new store, or returns null when there is no
+     * snapshot, it has another format version, or the CSV changed since it was written.
+     */
+    static GradeStore load(Path csvFile) throws IOException {
+        Path snapFile = pathFor(csvFile);
+        if (!Files.exists(snapFile) || !Files.exists(csvFile)) return null;
+
+        try (FileChannel channel = FileChannel.open(snapFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) return null;
+            // Read, not mapped: a mapping would keep the file from being replaced on Windows
+            Input in = new Input(channel);
+
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) return null;
+            long csvSize = in.getLong();
+            long csvModified = in.getLong();
+            if (csvSize != Files.size(csvFile) || csvModified != Files.getLastModifiedTime(csvFile).toMillis()) {
+                return null; // The CSV is newer than the snapshot
+            }
+            int rowCount = in.getInt();
+            int assignmentCount = in.getInt();
+            int categoryCount = in.getInt();
+            int subjectCount = in.getInt();
+
+            GradeStore store = new GradeStore();
+
+            // String tables: interning in file order reproduces the stored ids
+            for (int i = 0; i < assignmentCount; i++) {
+                store.assignmentId(in.getString());
+            }
+            for (int i = 0; i < categoryCount; i++) {
+                store.categoryId(in.getString());
+            }
+            String[] subjects = new String[subjectCount];
+            for (int i = 0; i < subjectCount; i++) {
+                subjects[i] = in.getString();
+            }
+            in.align();
+
+            // Subject blocks: the columns are bulk-copied out of the read buffer
+            for (int s = 0; s < subjectCount; s++) {
+                int subjectIndex = in.getInt();
+                int rows = in.getInt();
+                in.expect((long) rows * COLUMNS * 4);
+                int[][] data = new int[COLUMNS][rows];
+                for (int[] column : data) {
+                    in.getInts(column, rows);
+                }
+                store.subjectFor(subjects[subjectIndex]).addAll(rows, data[0], data[1], data[2], data[3], data[4]);
+            }
+
+            if (store.rowCount() != rowCount) return null;
+            return store;
+        } catch (RuntimeException e) {
+            // Truncated or corrupt snapshot; the CSV is still authoritative
+            System.err.println("Ignoring unreadable grade snapshot: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Little-endian buffered reader over a FileChannel, the counterpart of Output.
+     * Running off the end of the file throws BufferUnderflowException.
+     */
+    private static class Input {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private byte[] scratch = new byte[256];
+        // File offset just past the bytes read into buf
+        private long read;
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+            buf.limit(0);
+        }
+
+        int getInt() throws IOException {
+            need(4);
+            return buf.getInt();
+        }
+
+        long getLong() throws IOException {
+            need(8);
+            return buf.getLong();
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            expect(length);
+            if (length > scratch.length) scratch = new byte[length];
+            int off = 0;
+            while (off < length) {
+                need(1);
+                int n = Math.min(buf.remaining(), length - off);
+                buf.get(scratch, off, n);
+                off += n;
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        void getInts(int[] values, int count) throws IOException {
+            int off = 0;
+            while (off < count) {
+                need(4);
+                int n = Math.min(buf.remaining() / 4, count - off);
+                buf.asIntBuffer().get(values, off, n);
+                buf.position(buf.position() + n * 4);
+                off += n;
+            }
+        }
+
+        /** Skips the padding to the next 4-byte boundary. */
+        void align() throws IOException {
+            int padding = (int) (-position() & 3);
+            need(padding);
+            buf.position(buf.position() + padding);
+        }
+
+        /** Checks that the file has bytes more bytes, before allocating for them. */
+        void expect(long bytes) throws IOException {
+            if (bytes < 0 || bytes > channel.size() - position()) throw new BufferUnderflowException();
+        }
+
+        private long position() {
+            return read - buf.remaining();
+        }
+
+        private void need(int bytes) throws IOException {
+            if (buf.remaining() >= bytes) return;
+            buf.compact();
+            while (buf.position() < bytes) {
+                int n = channel.read(buf, read);
+                if (n < 0) throw new BufferUnderflowException();
+                read += n;
+            }
+            buf.flip();
+        }
+    }
+
+    // ---------------- Writing ----------------
+
+    /**
+     * Writes a snapshot of frozen via temp file and atomic rename, stamped with the size
+     * and modification time (ms) csvFile had when exactly these rows were read from or
+     * written to it. The CSV is not looked at here: rows appended to it since must make
+     * the snapshot stale, not be claimed by it. Nothing is written for a store that
+     * skipped lines of the CSV: loading the CSV again is what keeps that count.
+     */
+    static void write(GradeStore.Frozen frozen, Path csvFile, long csvSize, long csvModified) throws IOException {
+        if (frozen.skippedLines > 0) return;
+        Path snapFile = pathFor(csvFile);
+        Path tmp = snapFile.resolveSibling(snapFile.getFileName() + ".tmp");
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output o = new Output(out);
+            o.putInt(MAGIC);
+            o.putInt(VERSION);
+            o.putLong(csvSize);
+            o.putLong(csvModified);
+            o.putInt(frozen.rowCount);
+            o.putInt(frozen.assignmentNames.length);
+            o.putInt(frozen.categoryNames.length);
+            o.putInt(frozen.subjects.size());
+
+            for (String name : frozen.assignmentNames) o.putString(name);
+            for (String name : frozen.categoryNames) o.putString(name);
+            for (GradeStore.SubjectGrades.Columns c : frozen.subjects) o.putString(c.subject);
+            o.pad();
+
+            for (int s = 0; s < frozen.subjects.size(); s++) {
+                GradeStore.SubjectGrades.Columns c = frozen.subjects.get(s);
+                o.putInt(s);
+                o.putInt(c.size);
+                o.putInts(c.nameIds, c.size);
+                o.putInts(c.categoryIds, c.size);
+                o.putInts(c.scores, c.size);
+                o.putInts(c.outOfs, c.size);
+                o.putInts(c.epochDays, c.size);
+            }
+            o.flush();
+            out.force(true);
+            Diagnostics.recordBytesWritten(o.written);
+        }
+        Files.move(tmp, snapFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Little-endian buffered writer over a FileChannel.
+     */
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        void putLong(long v) throws IOException {
+            ensure(8);
+            buf.putLong(v);
+        }
+
+        void putString(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            int off = 0;
+            while (off < bytes.length) {
+                ensure(1);
+                int n = Math.min(buf.remaining(), bytes.length - off);
+                buf.put(bytes, off, n);
+                off += n;
+            }
+        }
+
+        void putInts(int[] values, int count) throws IOException {
+            int off = 0;
+            while (off < count) {
+                ensure(4);
+                int n = Math.min(buf.remaining() / 4, count - off);
+                buf.asIntBuffer().put(values, off, n);
+                buf.position(buf.position() + n * 4);
+                off += n;
+            }
+        }
+
+        /** Pads with zeros to the next 4-byte boundary. */
+        void pad() throws IOException {
+            long pos = written + buf.position();
+            while ((pos & 3) != 0) {
+                ensure(1);
+                buf.put((byte) 0);
+                pos++;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) flush();
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                written += channel.write(buf);
+            }
+            buf.clear();
+        }
+    }
+}
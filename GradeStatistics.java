@@ -0,0 +1,194 @@
+/* GradeStatistics.java
+   Score distributions per subject and category from one streaming pass, mergeable across partitions.
+*/
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Distributions of score percentages per (subject, category), plus each subject over
+ * all its categories and, in batch mode, the distribution of students' final grades.
+ * Each distribution is a {@link QuantileSketch} (count, mean, standard deviation,
+ * min/max and approximate percentiles) and a histogram of the letters computeGrade()
+ * gives each score, so memory depends on the number of subjects and categories, not
+ * on the number of rows.
+ *
+ * Partitions (row ranges, files, worker threads) each fill their own instance and are
+ * combined with {@link #merge}. Not thread-safe.
+ */
+final class GradeStatistics {
+
+    static final String ALL_CATEGORIES = "All categories";
+    static final String FINAL_GRADES = "Final grades";
+    // Rows per parallel partition when summarizing a store
+    private static final int PARTITION_ROWS = 1 << 16;
+    private static final double[] QUANTILES = {0.10, 0.25, 0.50, 0.75, 0.90};
+
+    /**
+     * One distribution of percentages (0-100).
+     */
+    static final class Distribution {
+        final QuantileSketch sketch = new QuantileSketch();
+        // Indexed like grading.GRADE_LETTERS
+        final long[] letters = new long[grading.GRADE_LETTERS.length];
+
+        void add(double percent) {
+            sketch.add(percent);
+            letters[grading.gradeIndex((int) Math.round(percent))]++;
+        }
+
+        void merge(Distribution other) {
+            sketch.merge(other.sketch);
+            for (int i = 0; i < letters.length; i++) {
+                letters[i] += other.letters[i];
+            }
+        }
+    }
+
+    // Subject -> category (or ALL_CATEGORIES / FINAL_GRADES) -> distribution, both sorted
+    private final Map<String, Map<String, Distribution>> bySubject = new TreeMap<>();
+
+    Distribution distribution(String subject, String category) {
+        return bySubject.computeIfAbsent(subject, s -> new TreeMap<>())
+                .computeIfAbsent(category, c -> new Distribution());
+    }
+
+    /**
+     * Adds one score to its category and to the subject's overall distribution.
+     */
+    void add(String subject, String category, double percent) {
+        distribution(subject, category).add(percent);
+        distribution(subject, ALL_CATEGORIES).add(percent);
+    }
+
+    /**
+     * Adds one student's final grade in subject (batch mode).
+     */
+    void addFinalGrade(String subject, double finalGrade) {
+        distribution(subject, FINAL_GRADES).add(finalGrade);
+    }
+
+    /**
+     * Adds rows [from, to) of one subject's columns; categoryNames resolves category ids.
+     */
+    void addRows(GradeStore.SubjectGrades.Columns columns, String[] categoryNames, int from, int to) {
+        // Resolve each category's distribution once, not per row
+        Distribution[] byCategory = new Distribution[categoryNames.length];
+        Distribution all = distribution(columns.subject, ALL_CATEGORIES);
+        for (int row = from; row < to; row++) {
+            int categoryId = columns.categoryIds[row];
+            Distribution d = byCategory[categoryId];
+            if (d == null) {
+                d = distribution(columns.subject, categoryNames[categoryId]);
+                byCategory[categoryId] = d;
+            }
+            double percent = (double) columns.scores[row] / columns.outOfs[row] * 100.0;
+            d.add(percent);
+            all.add(percent);
+        }
+    }
+
+    /**
+     * Folds other into this instance; other is left unchanged.
+     */
+    void merge(GradeStatistics other) {
+        other.bySubject.forEach((subject, categories) ->
+                categories.forEach((category, d) -> distribution(subject, category).merge(d)));
+    }
+
+    /**
+     * Summarizes a frozen store in parallel: each subject is cut into row ranges that are
+     * sketched independently and merged. Safe off the thread that owns the store.
+     */
+    static GradeStatistics of(GradeStore.Frozen frozen) {
+        List<int[]> partitions = new ArrayList<>();
+        for (int s = 0; s < frozen.subjects.size(); s++) {
+            int size = frozen.subjects.get(s).size;
+            for (int from = 0; from < size; from += PARTITION_ROWS) {
+                partitions.add(new int[] {s, from, Math.min(size, from + PARTITION_ROWS)});
+            }
+        }
+        return IntStream.range(0, partitions.size())
+                .parallel()
+                .mapToObj(i -> {
+                    int[] p = partitions.get(i);
+                    GradeStatistics partial = new GradeStatistics();
+                    partial.addRows(frozen.subjects.get(p[0]), frozen.categoryNames, p[1], p[2]);
+                    return partial;
+                })
+                .reduce(new GradeStatistics(), (a, b) -> {
+                    a.merge(b);
+                    return a;
+                }, (a, b) -> {
+                    a.merge(b);
+                    return a;
+                });
+    }
+
+    boolean isEmpty() {
+        return bySubject.isEmpty();
+    }
+
+    // ---------------- Output ----------------
+
+    /**
+     * Fixed-width text for the statistics window.
+     */
+    String format() {
+        if (bySubject.isEmpty()) return "No grades yet.\n";
+        StringBuilder sb = new StringBuilder();
+        bySubject.forEach((subject, categories) -> {
+            sb.append(subject).append('\n');
+            sb.append(String.format(Locale.ROOT, "  %-16s %7s %6s %6s %6s %6s %6s %6s %6s %6s %6s%n",
+                    "", "Count", "Mean", "SD", "Min", "P10", "P25", "Median", "P75", "P90", "Max"));
+            categories.forEach((category, d) -> {
+                QuantileSketch s = d.sketch;
+                sb.append(String.format(Locale.ROOT, "  %-16s %7d %6.1f %6.1f %6.1f %6.1f %6.1f %6.1f %6.1f %6.1f %6.1f%n",
+                        category, s.count(), s.mean(), s.standardDeviation(), s.min(),
+                        s.quantile(0.10), s.quantile(0.25), s.quantile(0.50), s.quantile(0.75), s.quantile(0.90),
+                        s.max()));
+                sb.append("  ").append(" ".repeat(16)).append(" Letters:");
+                for (int i = 0; i < d.letters.length; i++) {
+                    if (d.letters[i] > 0) {
+                        sb.append(' ').append(grading.GRADE_LETTERS[i]).append('=').append(d.letters[i]);
+                    }
+                }
+                sb.append('\n');
+            });
+            sb.append('\n');
+        });
+        return sb.toString();
+    }
+
+    /**
+     * One CSV row per distribution: Subject,Category,Count,Mean,StdDev,Min,P10,P25,Median,
+     * P75,P90,Max and a count per letter grade.
+     */
+    void writeCsv(Writer out) throws IOException {
+        StringBuilder sb = new StringBuilder("Subject,Category,Count,Mean,StdDev,Min,P10,P25,Median,P75,P90,Max");
+        for (String letter : grading.GRADE_LETTERS) sb.append(',').append(letter);
+        out.write(sb.append('\n').toString());
+        for (var subject : bySubject.entrySet()) {
+            for (var category : subject.getValue().entrySet()) {
+                QuantileSketch s = category.getValue().sketch;
+                sb.setLength(0);
+                sb.append(BatchGrader.csvField(subject.getKey())).append(',')
+                        .append(BatchGrader.csvField(category.getKey())).append(',')
+                        .append(s.count())
+                        .append(String.format(Locale.ROOT, ",%.2f,%.2f,%.2f", s.mean(), s.standardDeviation(), s.min()));
+                for (double q : QUANTILES) {
+                    sb.append(String.format(Locale.ROOT, ",%.2f", s.quantile(q)));
+                }
+                sb.append(String.format(Locale.ROOT, ",%.2f", s.max()));
+                for (long count : category.getValue().letters) sb.append(',').append(count);
+                out.write(sb.append('\n').toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,587 @@
+/* GradeStore.java
+   Columnar, primitive-backed storage for all grade rows.
+*/
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds every grade row in primitive columns. Subject, category and assignment names
+ * are dictionary-encoded into int ids and dates are stored as epoch-days, so a row costs
+ * a handful of ints instead of an object with four Strings.
+ * Rows are grouped by subject; each {@link SubjectGrades} slice keeps its own columns
+ * so per-subject scans walk contiguous arrays.
+ *
+ * The store itself belongs to one thread (the EDT for the open gradebook). Other threads
+ * read immutable {@link Frozen} snapshots: the owner publishes one with {@link #publish}
+ * after a change, and {@link #snapshot} returns the latest without locking.
+ */
+final class GradeStore {
+
+    static final String CSV_HEADER = "Name,Subject,Category,Score,OutOf,Date";
+
+    private final Dictionary subjectNames = new Dictionary();
+    private final Dictionary categoryNames = new Dictionary();
+    private final Dictionary assignmentNames = new Dictionary();
+
+    // Indexed by subject id
+    private final List<SubjectGrades> subjects = new ArrayList<>();
+    // Subject name -> slice, kept sorted for the dropdowns
+    private final Map<String, SubjectGrades> subjectsByName = new TreeMap<>();
+
+    private int rowCount;
+    // Lines of the source file the loader could not read; they are only in the file
+    private int skippedLines;
+    // Bumped on every change, like each slice's version
+    private long version;
+    // Latest snapshot from publish(); replaced with a single set, read lock-free
+    private final AtomicReference<Frozen> published = new AtomicReference<>(Frozen.EMPTY);
+
+    /**
+     * Appends a grade row, creating the subject slice if needed.
+     */
+    void add(String name, String subject, String category, int score, int outOf, int epochDay) {
+        SubjectGrades grades = subjectFor(subject);
+        grades.add(assignmentNames.intern(name), categoryNames.intern(category), score, outOf, epochDay);
+    }
+
+    /**
+     * Returns the slice for the subject, or null if it has no grades.
+     */
+    SubjectGrades subject(String subject) {
+        return subjectsByName.get(subject);
+    }
+
+    /**
+     * Returns the slice for the subject, creating an empty one if needed.
+     */
+    SubjectGrades subjectFor(String subject) {
+        SubjectGrades grades = subjectsByName.get(subject);
+        if (grades == null) {
+            int id = subjectNames.intern(subject);
+            grades = new SubjectGrades(id, subjectNames.value(id));
+            subjects.add(grades);
+            subjectsByName.put(grades.subject, grades);
+        }
+        return grades;
+    }
+
+    SubjectGrades subjectById(int id) {
+        return subjects.get(id);
+    }
+
+    boolean hasSubject(String subject) {
+        return subjectsByName.containsKey(subject);
+    }
+
+    /** Subject names in sorted order. */
+    String[] subjectNames() {
+        return subjectsByName.keySet().toArray(new String[0]);
+    }
+
+    /** Slices in subject-name order. */
+    Iterable<SubjectGrades> subjects() {
+        return subjectsByName.values();
+    }
+
+    int subjectCount() {
+        return subjects.size();
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * Lines of the file this store was read from that it does not hold, such as rows
+     * with a date that is not YYYY-MM-DD. While there are any the file must not be
+     * rewritten from the store, or those lines are lost.
+     */
+    int skippedLines() {
+        return skippedLines;
+    }
+
+    void countSkipped(int lines) {
+        if (lines == 0) return;
+        skippedLines += lines;
+        version++;
+    }
+
+    int categoryId(String category) {
+        return categoryNames.intern(category);
+    }
+
+    /** Returns the category id, or -1 if no grade uses it. */
+    int findCategoryId(String category) {
+        return categoryNames.find(category);
+    }
+
+    int assignmentId(String name) {
+        return assignmentNames.intern(name);
+    }
+
+    /** Returns the assignment name's id, or -1 if no grade uses it. */
+    int findAssignmentId(String name) {
+        return assignmentNames.find(name);
+    }
+
+    String categoryName(int id) {
+        return categoryNames.value(id);
+    }
+
+    String assignmentName(int id) {
+        return assignmentNames.value(id);
+    }
+
+    int categoryCount() {
+        return categoryNames.size();
+    }
+
+    /**
+     * Rough heap footprint of the store in bytes: column arrays at their capacity, the
+     * date indexes and the interned strings. Walks every dictionary entry, so call it
+     * after a load or save rather than per grade.
+     */
+    long estimatedBytes() {
+        long bytes = subjectNames.estimatedBytes() + categoryNames.estimatedBytes()
+                + assignmentNames.estimatedBytes();
+        for (SubjectGrades grades : subjects) {
+            bytes += grades.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Builds (or catches up) every subject's date index, e.g. right after loading so the
+     * first date lookup on the UI thread does not pay for the sort.
+     */
+    void indexDates() {
+        for (SubjectGrades grades : subjects) {
+            grades.dateIndex();
+        }
+    }
+
+    /**
+     * Captures the rows added so far for readers on other threads, publishes them as the
+     * current {@link #snapshot} and returns them. Owner thread only.
+     *
+     * Nothing is copied for a slice or dictionary that has not changed since the last
+     * snapshot; it is shared with it. A changed slice shares its column arrays, which is
+     * safe because a slice never rewrites rows below its current size.
+     */
+    Frozen publish() {
+        Frozen previous = published.get();
+        boolean sameStore = previous.store == this;
+        if (sameStore && previous.version == version) return previous;
+
+        List<SubjectGrades.Columns> columns = new ArrayList<>(subjects.size());
+        for (SubjectGrades grades : subjectsByName.values()) {
+            SubjectGrades.Columns before = sameStore ? previous.subject(grades.subject) : null;
+            columns.add(before != null && before.version == grades.version ? before : grades.columns());
+        }
+        String[] assignments = sameStore && previous.assignmentNames.length == assignmentNames.size()
+                ? previous.assignmentNames : assignmentNames.toArray();
+        String[] categories = sameStore && previous.categoryNames.length == categoryNames.size()
+                ? previous.categoryNames : categoryNames.toArray();
+        Frozen next = new Frozen(this, version, assignments, categories, Collections.unmodifiableList(columns), rowCount,
+                skippedLines);
+        published.set(next);
+        return next;
+    }
+
+    /**
+     * The snapshot last published by {@link #publish}, from any thread without locking.
+     * Compare {@link Frozen#version} or a subject's {@link SubjectGrades.Columns#version}
+     * with what a cache was built from to see whether it is stale.
+     */
+    Frozen snapshot() {
+        return published.get();
+    }
+
+    /**
+     * Appends one row of the gradeinput.csv format to sb (no trailing newline).
+     */
+    void appendCsvRow(StringBuilder sb, SubjectGrades grades, int row) {
+        sb.append(assignmentName(grades.nameId(row))).append(',')
+                .append(grades.subject).append(',')
+                .append(categoryName(grades.categoryId(row))).append(',')
+                .append(grades.score(row)).append(',')
+                .append(grades.outOf(row)).append(',');
+        appendIsoDate(sb, grades.epochDay(row));
+    }
+
+    /**
+     * Appends the epoch-day as YYYY-MM-DD.
+     */
+    static void appendIsoDate(StringBuilder sb, int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        int year = date.getYear();
+        int month = date.getMonthValue();
+        int day = date.getDayOfMonth();
+        if (year < 0 || year > 9999) {
+            sb.append(date);
+            return;
+        }
+        if (year < 1000) sb.append('0');
+        if (year < 100) sb.append('0');
+        if (year < 10) sb.append('0');
+        sb.append(year).append('-');
+        if (month < 10) sb.append('0');
+        sb.append(month).append('-');
+        if (day < 10) sb.append('0');
+        sb.append(day);
+    }
+
+    static String isoDate(int epochDay) {
+        StringBuilder sb = new StringBuilder(10);
+        appendIsoDate(sb, epochDay);
+        return sb.toString();
+    }
+
+    /**
+     * Grades for one subject in primitive columns. Row i of every column describes
+     * the same assignment, in insertion order.
+     * Running per-category aggregates (count and sum of percentages) are updated on
+     * every add, so the weighted grade never needs a rescan.
+     */
+    final class SubjectGrades {
+        final int id;
+        final String subject;
+
+        private int size;
+        // Bumped on every change so caches can tell when to rebuild
+        private long version;
+        private int[] nameIds = new int[8];
+        private int[] categoryIds = new int[8];
+        private int[] scores = new int[8];
+        private int[] outOfs = new int[8];
+        private int[] epochDays = new int[8];
+
+        // Indexed by category id
+        private int[] categoryCounts = new int[4];
+        private double[] categorySums = new double[4];
+
+        // Rows by date; brought up to date when a date-ordered lookup needs it
+        private final DateIndex dateIndex = new DateIndex();
+
+        private SubjectGrades(int id, String subject) {
+            this.id = id;
+            this.subject = subject;
+        }
+
+        void add(int nameId, int categoryId, int score, int outOf, int epochDay) {
+            if (size == scores.length) {
+                int capacity = size * 2;
+                nameIds = Arrays.copyOf(nameIds, capacity);
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+                outOfs = Arrays.copyOf(outOfs, capacity);
+                epochDays = Arrays.copyOf(epochDays, capacity);
+            }
+            nameIds[size] = nameId;
+            categoryIds[size] = categoryId;
+            scores[size] = score;
+            outOfs[size] = outOf;
+            epochDays[size] = epochDay;
+            size++;
+            rowCount++;
+            version++;
+            GradeStore.this.version++;
+            addToCategory(categoryId, score, outOf);
+        }
+
+        /**
+         * Appends count rows given as whole columns, e.g. from a snapshot. When the slice
+         * is empty the arrays are adopted as-is rather than copied.
+         */
+        void addAll(int count, int[] nameIds, int[] categoryIds, int[] scores, int[] outOfs, int[] epochDays) {
+            if (size == 0 && scores.length >= count) {
+                this.nameIds = nameIds;
+                this.categoryIds = categoryIds;
+                this.scores = scores;
+                this.outOfs = outOfs;
+                this.epochDays = epochDays;
+                size = count;
+                rowCount += count;
+                version++;
+                GradeStore.this.version++;
+                for (int i = 0; i < count; i++) {
+                    addToCategory(categoryIds[i], scores[i], outOfs[i]);
+                }
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                add(nameIds[i], categoryIds[i], scores[i], outOfs[i], epochDays[i]);
+            }
+        }
+
+        private void addToCategory(int categoryId, int score, int outOf) {
+            if (categoryId >= categoryCounts.length) {
+                int capacity = Math.max(categoryId + 1, categoryCounts.length * 2);
+                categoryCounts = Arrays.copyOf(categoryCounts, capacity);
+                categorySums = Arrays.copyOf(categorySums, capacity);
+            }
+            categoryCounts[categoryId]++;
+            categorySums[categoryId] += (double) score / outOf;
+        }
+
+        /** Number of assignments in the category (by store category id). */
+        int categoryCount(int categoryId) {
+            return categoryId >= 0 && categoryId < categoryCounts.length ? categoryCounts[categoryId] : 0;
+        }
+
+        /** Sum of the category's assignment percentages, as fractions. */
+        double categorySum(int categoryId) {
+            return categoryId >= 0 && categoryId < categorySums.length ? categorySums[categoryId] : 0.0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long version() {
+            return version;
+        }
+
+        int nameId(int row) {
+            return nameIds[row];
+        }
+
+        int categoryId(int row) {
+            return categoryIds[row];
+        }
+
+        int score(int row) {
+            return scores[row];
+        }
+
+        int outOf(int row) {
+            return outOfs[row];
+        }
+
+        int epochDay(int row) {
+            return epochDays[row];
+        }
+
+        /** Score as a fraction of outOf, e.g. 0.95. */
+        double percent(int row) {
+            return (double) scores[row] / outOfs[row];
+        }
+
+        String name(int row) {
+            return assignmentName(nameIds[row]);
+        }
+
+        String category(int row) {
+            return categoryName(categoryIds[row]);
+        }
+
+        long estimatedBytes() {
+            // Five int columns plus the per-category count and sum arrays
+            return 5L * 4 * scores.length + 12L * categoryCounts.length + dateIndex.estimatedBytes() + 64;
+        }
+
+        Columns columns() {
+            return new Columns(subject, version, size, nameIds, categoryIds, scores, outOfs, epochDays);
+        }
+
+        // ---------------- Date-ordered access ----------------
+
+        /** The date index, caught up with any rows added since its last use. */
+        DateIndex dateIndex() {
+            dateIndex.catchUp(size, epochDays);
+            return dateIndex;
+        }
+
+        /**
+         * Row indexes ordered by date, ties kept in insertion order. The slice itself is not reordered.
+         */
+        int[] rowsByDate() {
+            DateIndex index = dateIndex();
+            return index.rows(0, index.size());
+        }
+
+        /** Rows dated fromDay through toDay inclusive, in date order. */
+        int[] rowsBetween(int fromDay, int toDay) {
+            DateIndex index = dateIndex();
+            int from = index.lowerBound(fromDay);
+            int to = index.upperBound(toDay);
+            return from < to ? index.rows(from, to) : new int[0];
+        }
+
+        /** Rows dated on or before day, in date order: what the grade was as of that day. */
+        int[] rowsAsOf(int day) {
+            DateIndex index = dateIndex();
+            return index.rows(0, index.upperBound(day));
+        }
+
+        /** The n most recent rows by date, oldest first. */
+        int[] lastRows(int n) {
+            DateIndex index = dateIndex();
+            return index.rows(Math.max(0, index.size() - n), index.size());
+        }
+
+        /** The first size rows of a slice at the moment columns() was called. */
+        static final class Columns {
+            final String subject;
+            // The slice's version() when captured
+            final long version;
+            final int size;
+            final int[] nameIds;
+            final int[] categoryIds;
+            final int[] scores;
+            final int[] outOfs;
+            final int[] epochDays;
+
+            Columns(String subject, long version, int size, int[] nameIds, int[] categoryIds, int[] scores, int[] outOfs,
+                    int[] epochDays) {
+                this.subject = subject;
+                this.version = version;
+                this.size = size;
+                this.nameIds = nameIds;
+                this.categoryIds = categoryIds;
+                this.scores = scores;
+                this.outOfs = outOfs;
+                this.epochDays = epochDays;
+            }
+        }
+    }
+
+    /**
+     * Immutable view of the store as of a publish() call, safe to read from any thread.
+     */
+    static final class Frozen {
+        static final Frozen EMPTY = new Frozen(null, -1, new String[0], new String[0], List.of(), 0, 0);
+        private static final Comparator<SubjectGrades.Columns> BY_SUBJECT = Comparator.comparing(c -> c.subject);
+
+        // Store this was taken from, so the next publish() knows what it can share
+        private final GradeStore store;
+        // The store's version() when captured
+        final long version;
+        final String[] assignmentNames;
+        final String[] categoryNames;
+        // In subject-name order
+        final List<SubjectGrades.Columns> subjects;
+        final int rowCount;
+        // See GradeStore.skippedLines()
+        final int skippedLines;
+
+        private Frozen(GradeStore store, long version, String[] assignmentNames, String[] categoryNames,
+                List<SubjectGrades.Columns> subjects, int rowCount, int skippedLines) {
+            this.store = store;
+            this.version = version;
+            this.assignmentNames = assignmentNames;
+            this.categoryNames = categoryNames;
+            this.subjects = subjects;
+            this.rowCount = rowCount;
+            this.skippedLines = skippedLines;
+        }
+
+        /** The subject's columns, or null if it had no grades. */
+        SubjectGrades.Columns subject(String subject) {
+            int i = Collections.binarySearch(subjects,
+                    new SubjectGrades.Columns(subject, 0, 0, null, null, null, null, null), BY_SUBJECT);
+            return i >= 0 ? subjects.get(i) : null;
+        }
+
+        /** The subject's version when captured, or -1 if it had no grades. */
+        long subjectVersion(String subject) {
+            SubjectGrades.Columns columns = subject(subject);
+            return columns == null ? -1 : columns.version;
+        }
+
+        /**
+         * Writes the header and every row in the gradeinput.csv format.
+         */
+        void writeCsv(Writer out) throws IOException {
+            StringBuilder row = new StringBuilder(64);
+            out.write(CSV_HEADER);
+            out.write('\n');
+            for (SubjectGrades.Columns c : subjects) {
+                for (int i = 0; i < c.size; i++) {
+                    row.setLength(0);
+                    row.append(assignmentNames[c.nameIds[i]]).append(',')
+                            .append(c.subject).append(',')
+                            .append(categoryNames[c.categoryIds[i]]).append(',')
+                            .append(c.scores[i]).append(',')
+                            .append(c.outOfs[i]).append(',');
+                    appendIsoDate(row, c.epochDays[i]);
+                    row.append('\n');
+                    out.append(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Two-way mapping between Strings and dense int ids. Only the owning thread interns,
+     * but value(id) may be called from any thread that learned the id through a
+     * happens-before hand-off (e.g. frozen columns passed to an executor): the values
+     * array is only ever replaced by a complete copy and published through a volatile.
+     */
+    static final class Dictionary {
+        private volatile String[] values = new String[16];
+        private int size;
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        int intern(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = size;
+                String[] current = values;
+                if (id == current.length) {
+                    current = Arrays.copyOf(current, id * 2);
+                    current[id] = value;
+                    values = current;
+                } else {
+                    current[id] = value;
+                }
+                size++;
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        /** Returns the id, or -1 if the value was never interned. */
+        int find(String value) {
+            Integer id = ids.get(value);
+            return id == null ? -1 : id;
+        }
+
+        String value(int id) {
+            return values[id];
+        }
+
+        int size() {
+            return size;
+        }
+
+        String[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        long estimatedBytes() {
+            String[] current = values;
+            // Array slot, HashMap entry and boxed id per value, plus the string itself
+            long bytes = 4L * current.length + 64L * size;
+            for (int i = 0; i < size; i++) {
+                bytes += 40 + current[i].length();
+            }
+            return bytes;
+        }
+    }
+}
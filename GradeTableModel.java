@@ -0,0 +1,108 @@
+/* GradeTableModel.java
+   Lazy table model over one subject's grade columns.
+*/
+
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDate;
+
+/**
+ * Exposes a subject's captured columns to a JTable without copying or pre-formatting
+ * anything. Cells are produced on demand, so only the rows the table actually paints
+ * (or the row sorter compares) are ever touched.
+ */
+final class GradeTableModel extends AbstractTableModel {
+
+    static final int NAME = 0;
+    static final int CATEGORY = 1;
+    static final int SCORE = 2;
+    static final int OUT_OF = 3;
+    static final int PERCENT = 4;
+    static final int DATE = 5;
+
+    private static final String[] COLUMN_NAMES = {"Assignment Name", "Category", "Score", "Out Of", "Percentage", "Date"};
+    private static final Class<?>[] COLUMN_CLASSES = {String.class, String.class, Integer.class, Integer.class, Double.class, LocalDate.class};
+
+    private GradeStore store;
+    private GradeStore.SubjectGrades.Columns rows;
+    // Store rows shown, e.g. a date range from the subject's index; null shows every row
+    private int[] visible;
+
+    /**
+     * Points the model at another subject (or none) and tells the table to repaint.
+     */
+    void setRows(GradeStore store, GradeStore.SubjectGrades.Columns rows) {
+        setRows(store, rows, null);
+    }
+
+    /**
+     * Like setRows(store, rows) but shows only the listed store rows, in that order.
+     */
+    void setRows(GradeStore store, GradeStore.SubjectGrades.Columns rows, int[] visible) {
+        this.store = store;
+        this.rows = rows;
+        this.visible = visible;
+        fireTableDataChanged();
+    }
+
+    /**
+     * True if the assignment name or category contains needle, ignoring case.
+     */
+    boolean matches(int row, String needle) {
+        int r = storeRow(row);
+        return containsIgnoreCase(store.assignmentName(rows.nameIds[r]), needle)
+                || containsIgnoreCase(store.categoryName(rows.categoryIds[r]), needle);
+    }
+
+    private int storeRow(int row) {
+        return visible == null ? row : visible[row];
+    }
+
+    private static boolean containsIgnoreCase(String haystack, String needle) {
+        for (int i = 0; i + needle.length() <= haystack.length(); i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int getRowCount() {
+        if (rows == null) return 0;
+        return visible == null ? rows.size : visible.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return COLUMN_CLASSES[column];
+    }
+
+    @Override
+    public Object getValueAt(int modelRow, int column) {
+        int row = storeRow(modelRow);
+        switch (column) {
+            case NAME:
+                return store.assignmentName(rows.nameIds[row]);
+            case CATEGORY:
+                return store.categoryName(rows.categoryIds[row]);
+            case SCORE:
+                return rows.scores[row];
+            case OUT_OF:
+                return rows.outOfs[row];
+            case PERCENT:
+                return (double) rows.scores[row] / rows.outOfs[row] * 100.0;
+            case DATE:
+                return LocalDate.ofEpochDay(rows.epochDays[row]);
+            default:
+                throw new IndexOutOfBoundsException("column " + column);
+        }
+    }
+}
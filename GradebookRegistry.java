@@ -0,0 +1,361 @@
+/* GradebookRegistry.java
+   Per-student gradebooks loaded on demand and kept in a row-bounded LRU cache.
+*/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Serves many students from one process. Each student has a gradebook file
+ * {@code <dir>/<studentId>.csv} (the same layout {@link BatchGrader} reads), which is
+ * loaded on first access - from its binary snapshot when that is current - and then
+ * cached.
+ *
+ * The cache is bounded by the total number of grade rows held, since rows are what
+ * cost heap. When it is over budget the least recently used gradebooks are evicted;
+ * one that gained rows since it was loaded is written back first: the new rows are
+ * appended to the file, so lines the loader skipped stay in it, and the snapshot is
+ * refreshed. Hits, misses, evictions and write-backs are counted for sizing.
+ *
+ * All methods are thread-safe. A gradebook handle stays usable after eviction: rows
+ * added through an evicted handle are written straight through to its file, and while
+ * the handle is still referenced get() hands out that same instance again.
+ */
+final class GradebookRegistry implements AutoCloseable {
+
+    // Default budget: about 2M rows, i.e. well under 100 MB of columns
+    static final long DEFAULT_MAX_ROWS = Long.getLong("gradehelper.cache.rows", 2_000_000L);
+
+    private static final Pattern STUDENT_ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+
+    private final Path dir;
+    private final long maxRows;
+
+    // Access-ordered: the eldest entry is the least recently used
+    private final LinkedHashMap<String, Gradebook> cache = new LinkedHashMap<>(16, 0.75f, true);
+    // Evicted gradebooks a caller may still hold. A get() reuses a live one so there is
+    // never more than one copy of a student's grades. At most one entry per student.
+    private final Map<String, WeakReference<Gradebook>> released = new HashMap<>();
+    private long cachedRows;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long writeBacks;
+
+    GradebookRegistry(Path dir) {
+        this(dir, DEFAULT_MAX_ROWS);
+    }
+
+    GradebookRegistry(Path dir, long maxRows) {
+        if (maxRows <= 0) throw new IllegalArgumentException("maxRows must be positive: " + maxRows);
+        this.dir = dir;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * One student's grades. Reads and writes go through the handle so they are
+     * serialised against loading and write-back.
+     */
+    final class Gradebook {
+        final String studentId;
+        final Path file;
+
+        private GradeStore store;
+        private boolean loaded;
+        // Rows added since the last write-back, as CSV lines
+        private final StringBuilder unsaved = new StringBuilder();
+        // Size of the file holding exactly the store's other rows, or -1 if unknown
+        private long fileSize;
+        // Rows currently charged against the cache budget; guarded by the registry
+        private int charged;
+        private volatile boolean evicted;
+
+        private Gradebook(String studentId) {
+            this.studentId = studentId;
+            this.file = dir.resolve(studentId + ".csv");
+        }
+
+        /**
+         * Runs reader against the store while holding the gradebook. The store must not
+         * escape reader if it is used from several threads.
+         */
+        synchronized <T> T read(Function<GradeStore, T> reader) {
+            return reader.apply(store);
+        }
+
+        /**
+         * Adds a grade row; see {@link GradeStore#add}.
+         */
+        void add(String name, String subject, String category, int score, int outOf, int epochDay) throws IOException {
+            synchronized (this) {
+                store.add(name, subject, category, score, outOf, epochDay);
+                GradeStore.SubjectGrades grades = store.subject(subject);
+                store.appendCsvRow(unsaved, grades, grades.size() - 1);
+                unsaved.append('\n');
+                if (evicted) {
+                    writeBack();
+                    return;
+                }
+            }
+            recharge(this);
+        }
+
+        synchronized int rowCount() {
+            return store.rowCount();
+        }
+
+        /**
+         * True if rows were added since the file was last read or written.
+         */
+        synchronized boolean isDirty() {
+            return loaded && unsaved.length() > 0;
+        }
+
+        private synchronized void ensureLoaded() throws IOException {
+            if (loaded) return;
+            GradeStore snapshot = GradeSnapshot.load(file);
+            if (snapshot != null) {
+                store = snapshot;
+                fileSize = Files.size(file);
+            } else if (Files.exists(file)) {
+                CsvGradeLoader.LoadResult result = CsvGradeLoader.load(file);
+                store = result.store;
+                fileSize = result.end;
+                if (result.rowsSkipped > 0) {
+                    System.err.println("Skipped " + result.rowsSkipped + " malformed grade line(s) in " + file);
+                }
+            } else {
+                store = new GradeStore();
+                fileSize = 0;
+            }
+            loaded = true;
+        }
+
+        /**
+         * Appends the rows added since the last write-back to the file, creating it with
+         * a header if needed. Returns true if it wrote. The snapshot is only refreshed
+         * while nothing else has changed the file.
+         */
+        synchronized boolean writeBack() throws IOException {
+            if (!isDirty()) return false;
+            byte[] rows = unsaved.toString().getBytes(StandardCharsets.UTF_8);
+            long size;
+            long modified;
+            boolean current;
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+                 FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                long from = in.size();
+                current = from == fileSize;
+                String before = from == 0 ? GradeStore.CSV_HEADER + "\n" : GradeJournal.lastByte(in, from) != '\n' ? "\n" : "";
+                byte[] prefix = before.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buf = ByteBuffer.allocate(prefix.length + rows.length).put(prefix).put(rows).flip();
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+                out.force(true);
+                Diagnostics.recordBytesWritten(buf.limit());
+                size = in.size();
+                modified = Files.getLastModifiedTime(file).toMillis();
+            }
+            unsaved.setLength(0);
+            fileSize = current ? size : -1;
+            if (current) GradeSnapshot.write(store.publish(), file, size, modified);
+            countWriteBack();
+            return true;
+        }
+    }
+
+    /**
+     * Cache counters at one point in time.
+     */
+    static final class Stats {
+        final long hits;
+        final long misses;
+        final long evictions;
+        final long writeBacks;
+        final int cached;
+        final long cachedRows;
+        final long maxRows;
+
+        Stats(long hits, long misses, long evictions, long writeBacks, int cached, long cachedRows, long maxRows) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.writeBacks = writeBacks;
+            this.cached = cached;
+            this.cachedRows = cachedRows;
+            this.maxRows = maxRows;
+        }
+
+        double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d gradebook(s), %d/%d rows cached; %d hit(s), %d miss(es) (%.1f%% hits), %d eviction(s), %d write-back(s)",
+                    cached, cachedRows, maxRows, hits, misses, hitRate() * 100, evictions, writeBacks);
+        }
+    }
+
+    // ---------------- Access ----------------
+
+    static boolean isValidStudentId(String studentId) {
+        return studentId != null && STUDENT_ID.matcher(studentId).matches();
+    }
+
+    /**
+     * Returns the student's gradebook, loading it on first use. A student without a
+     * file gets an empty gradebook; the file is created on the first write-back.
+     */
+    Gradebook get(String studentId) throws IOException {
+        if (!isValidStudentId(studentId)) {
+            throw new IllegalArgumentException("Invalid student id: " + studentId);
+        }
+
+        Gradebook gradebook;
+        synchronized (this) {
+            gradebook = cache.get(studentId);
+            if (gradebook == null) {
+                gradebook = reclaim(studentId);
+            }
+            if (gradebook != null) {
+                hits++;
+            } else {
+                misses++;
+                gradebook = new Gradebook(studentId);
+                cache.put(studentId, gradebook);
+            }
+        }
+
+        // Load outside the registry lock so other students are not held up
+        gradebook.ensureLoaded();
+        recharge(gradebook);
+        return gradebook;
+    }
+
+    /**
+     * Student ids that have a gradebook file, sorted.
+     */
+    List<String> students() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (Path file : BatchGrader.listGradebooks(dir)) {
+            String id = BatchGrader.studentId(file);
+            if (isValidStudentId(id)) ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * Writes back every cached gradebook that changed. Returns how many were written.
+     */
+    int flush() throws IOException {
+        List<Gradebook> cached;
+        synchronized (this) {
+            cached = new ArrayList<>(cache.values());
+        }
+        int written = 0;
+        for (Gradebook gradebook : cached) {
+            if (gradebook.writeBack()) written++;
+        }
+        return written;
+    }
+
+    synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, writeBacks, cache.size(), cachedRows, maxRows);
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ---------------- Eviction ----------------
+
+    /**
+     * Updates the rows charged for gradebook, then evicts and writes back whatever no
+     * longer fits. Must not be called while holding a gradebook lock: gradebook locks
+     * are always taken before the registry lock, never the other way round.
+     */
+    private void recharge(Gradebook gradebook) {
+        int rows = gradebook.rowCount();
+        List<Gradebook> victims = new ArrayList<>();
+        synchronized (this) {
+            if (cache.get(gradebook.studentId) == gradebook) {
+                cachedRows += rows - gradebook.charged;
+                gradebook.charged = rows;
+            }
+
+            // Never evict the gradebook being handed out, even if it alone is over budget
+            Iterator<Gradebook> it = cache.values().iterator();
+            while (cachedRows > maxRows && it.hasNext()) {
+                Gradebook eldest = it.next();
+                if (eldest == gradebook) continue;
+                it.remove();
+                cachedRows -= eldest.charged;
+                eldest.charged = 0;
+                eldest.evicted = true;
+                evictions++;
+                released.put(eldest.studentId, new WeakReference<>(eldest));
+                victims.add(eldest);
+            }
+        }
+
+        for (Gradebook victim : victims) {
+            try {
+                victim.writeBack();
+            } catch (IOException e) {
+                // Keep the rows in memory rather than losing them; retried on the next eviction
+                System.err.println("Could not write back gradebook " + victim.studentId + ": " + e.getMessage());
+                int victimRows = victim.rowCount();
+                synchronized (this) {
+                    if (reclaim(victim.studentId) == victim) {
+                        victim.charged = victimRows;
+                        cachedRows += victimRows;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts a released gradebook that is still in memory back into the cache.
+     * Returns null if there is none. Call with the registry lock held.
+     */
+    private Gradebook reclaim(String studentId) {
+        WeakReference<Gradebook> ref = released.remove(studentId);
+        Gradebook gradebook = ref == null ? null : ref.get();
+        if (gradebook != null) {
+            gradebook.evicted = false;
+            cache.put(studentId, gradebook);
+        }
+        return gradebook;
+    }
+
+    private synchronized void countWriteBack() {
+        writeBacks++;
+    }
+}
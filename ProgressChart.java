@@ -0,0 +1,139 @@
+/* ProgressChart.java
+   The styled grade-progress line chart, shared by the chart windows and the report-card export.
+*/
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import javax.swing.UIManager;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.ValueMarker;
+import org.jfree.chart.renderer.category.LineAndShapeRenderer;
+import org.jfree.chart.ui.RectangleAnchor;
+import org.jfree.chart.ui.TextAnchor;
+import org.jfree.data.category.DefaultCategoryDataset;
+
+/**
+ * Builds the progress chart: each assignment's score and the running weighted final
+ * grade over time, on a fixed 0-100 axis with A and B lines. A chart is a template that
+ * is styled once; showing another subject only changes its title and dataset.
+ */
+final class ProgressChart {
+
+    static final String SCORE_SERIES = "Assignment Score";
+    static final String TREND_SERIES = "Weighted Final Grade";
+
+    private ProgressChart() {
+    }
+
+    /**
+     * Creates a styled chart for the subject backed by dataset.
+     */
+    static JFreeChart create(String subject, DefaultCategoryDataset dataset) {
+        JFreeChart chart = ChartFactory.createLineChart(
+                title(subject),                        // Chart title
+                "Assignment",                          // X-Axis label
+                "Score Percentage (%)",                // Y-Axis label
+                dataset,                               // Data
+                PlotOrientation.VERTICAL,
+                true,                                  // Include legend
+                true,                                  // Tooltips
+                false                                  // URLs
+        );
+        applyStyling(chart);
+        return chart;
+    }
+
+    static String title(String subject) {
+        return "Grade Progress: " + subject;
+    }
+
+    /**
+     * Replaces the dataset's contents with the given points of series (all points if null).
+     */
+    static void fill(DefaultCategoryDataset dataset, ChartSeriesCache.Series series, int[] points) {
+        dataset.clear();
+        if (points == null) {
+            for (int p = 0; p < series.size(); p++) {
+                addPoint(dataset, series, p);
+            }
+        } else {
+            for (int p : points) {
+                addPoint(dataset, series, p);
+            }
+        }
+    }
+
+    static void addPoint(DefaultCategoryDataset dataset, ChartSeriesCache.Series series, int p) {
+        // Add to dataset: Value, Series (Grade), Category (Assignment Name + Date)
+        String label = series.label(p);
+        dataset.addValue(series.percent(p), SCORE_SERIES, label);
+        double trend = series.trend(p);
+        dataset.addValue(Double.isNaN(trend) ? null : (Number) trend, TREND_SERIES, label);
+    }
+
+    /**
+     * Helper to apply consistent Light Mode styling to chart elements.
+     */
+    private static void applyStyling(JFreeChart chart) {
+        CategoryPlot plot = chart.getCategoryPlot();
+
+        Color bg = UIManager.getColor("control"); // Light background
+        if (bg == null) bg = new Color(238, 238, 238); // No look and feel when headless
+        Color fg = Color.BLACK; // Black text
+
+        chart.setBackgroundPaint(bg);
+        chart.getTitle().setPaint(fg);
+        chart.getLegend().setBackgroundPaint(bg);
+        chart.getLegend().setItemPaint(fg);
+
+        plot.setBackgroundPaint(Color.LIGHT_GRAY); // Light gray plot background for contrast
+        plot.setDomainGridlinePaint(Color.WHITE);
+        plot.setRangeGridlinePaint(Color.WHITE);
+
+        plot.getDomainAxis().setTickLabelPaint(fg);
+        plot.getDomainAxis().setLabelPaint(fg);
+        plot.getRangeAxis().setTickLabelPaint(fg);
+        plot.getRangeAxis().setLabelPaint(fg);
+
+        LineAndShapeRenderer renderer = (LineAndShapeRenderer) plot.getRenderer();
+
+        // Custom color for the line (Blue)
+        renderer.setSeriesPaint(0, Color.BLUE);
+        renderer.setSeriesStroke(0, new BasicStroke(3.0f));
+        renderer.setSeriesShapesVisible(0, true);
+
+        // Running weighted final grade (Magenta), drawn over the scores without markers
+        renderer.setSeriesPaint(1, Color.MAGENTA.darker());
+        renderer.setSeriesStroke(1, new BasicStroke(2.5f));
+        renderer.setSeriesShapesVisible(1, false);
+
+        // Set fixed range for Y-axis (0-100)
+        NumberAxis rangeAxis = (NumberAxis) plot.getRangeAxis();
+        rangeAxis.setRange(0.0, 100.0);
+        rangeAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+
+        // Add 90% and 80% markers
+        plot.clearRangeMarkers();
+        addGradeMarker(plot, 90.0, Color.GREEN.darker(), "A-Line");
+        addGradeMarker(plot, 80.0, Color.ORANGE.darker(), "B-Line");
+    }
+
+    /**
+     * Helper to add a horizontal line marker to the chart plot.
+     */
+    private static void addGradeMarker(CategoryPlot plot, double value, Color color, String label) {
+        ValueMarker marker = new ValueMarker(value);
+        marker.setPaint(color);
+        marker.setStroke(new BasicStroke(1.5f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, new float[] {10.0f}, 0.0f));
+        marker.setLabel(label);
+        marker.setLabelAnchor(RectangleAnchor.TOP_LEFT);
+        marker.setLabelTextAnchor(TextAnchor.TOP_RIGHT);
+        marker.setLabelPaint(Color.BLACK); // Marker labels are black
+        plot.addRangeMarker(marker);
+    }
+}
@@ -0,0 +1,222 @@
+/* QuantileSketch.java
+   Mergeable, bounded-memory distribution summary: a merging t-digest plus exact moments.
+*/
+
+import java.util.Arrays;
+
+/**
+ * Approximate quantiles of a stream of values in O(compression * log n) memory, using a
+ * merging t-digest: values are buffered, then sorted together with the existing
+ * centroids and greedily merged into centroids whose size is bounded by
+ * 4 * n * q * (1 - q) / compression. Centroids near the tails stay small, so extreme
+ * percentiles are more precise than the median, and two sketches merge by folding
+ * one's centroids into the other.
+ *
+ * Count, mean, variance (Chan's parallel update of Welford's sums), min and max are
+ * kept exactly. Not thread-safe; give each worker its own sketch and merge them.
+ */
+final class QuantileSketch {
+
+    static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+    // Values not yet merged into centroids
+    private final double[] buffer;
+    private int buffered;
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    QuantileSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    QuantileSketch(double compression) {
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression) * 2 + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.buffer = new double[capacity * 4];
+    }
+
+    void add(double value) {
+        if (Double.isNaN(value)) return;
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) min = value;
+        if (value > max) max = value;
+
+        buffer[buffered++] = value;
+        if (buffered == buffer.length) compress(null, null, 0);
+    }
+
+    /**
+     * Folds other's values into this sketch; other is left unchanged.
+     */
+    void merge(QuantileSketch other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            mean = other.mean;
+            m2 = other.m2;
+        } else {
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        // other's centroids and pending values become sorted weighted points for one compression
+        double[] pending = Arrays.copyOf(other.buffer, other.buffered);
+        Arrays.sort(pending);
+        double[][] extra = mergeRuns(other.means, other.weights, other.centroids, pending, null, pending.length);
+        compress(extra[0], extra[1], extra[0].length);
+    }
+
+    /**
+     * Merges the buffer (and extra weighted points sorted by mean, if any) into the centroids.
+     */
+    private void compress(double[] extraMeans, double[] extraWeights, int extra) {
+        if (buffered == 0 && extra == 0) return;
+        // Centroids are kept sorted, so sorting the buffer is enough to merge everything in order
+        Arrays.sort(buffer, 0, buffered);
+        double[][] points = mergeRuns(means, weights, centroids, buffer, null, buffered);
+        buffered = 0;
+        if (extra > 0) {
+            points = mergeRuns(points[0], points[1], points[0].length, extraMeans, extraWeights, extra);
+        }
+        double[] m = points[0];
+        double[] w = points[1];
+        int n = m.length;
+
+        double total = 0;
+        for (int i = 0; i < n; i++) total += w[i];
+
+        int out = 0;
+        double soFar = 0;
+        double curMean = m[0];
+        double curWeight = w[0];
+        for (int i = 1; i < n; i++) {
+            double nextMean = m[i];
+            double nextWeight = w[i];
+            double proposed = curWeight + nextWeight;
+            double q0 = soFar / total;
+            double q2 = (soFar + proposed) / total;
+            if (proposed <= total * Math.min(maxSize(q0), maxSize(q2))) {
+                curMean += (nextMean - curMean) * nextWeight / proposed;
+                curWeight = proposed;
+            } else {
+                out = emit(out, curMean, curWeight);
+                soFar += curWeight;
+                curMean = nextMean;
+                curWeight = nextWeight;
+            }
+        }
+        centroids = emit(out, curMean, curWeight);
+    }
+
+    /**
+     * Merges two runs sorted by mean into new {means, weights} arrays; null weights mean 1 each.
+     */
+    private static double[][] mergeRuns(double[] m1, double[] w1, int n1, double[] m2, double[] w2, int n2) {
+        double[] m = new double[n1 + n2];
+        double[] w = new double[n1 + n2];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < m.length; k++) {
+            if (j == n2 || (i < n1 && m1[i] <= m2[j])) {
+                m[k] = m1[i];
+                w[k] = w1 == null ? 1.0 : w1[i];
+                i++;
+            } else {
+                m[k] = m2[j];
+                w[k] = w2 == null ? 1.0 : w2[j];
+                j++;
+            }
+        }
+        return new double[][] {m, w};
+    }
+
+    private double maxSize(double q) {
+        return 4 * q * (1 - q) / compression;
+    }
+
+    private int emit(int at, double centroidMean, double centroidWeight) {
+        if (at == means.length) {
+            means = Arrays.copyOf(means, at * 2);
+            weights = Arrays.copyOf(weights, at * 2);
+        }
+        means[at] = centroidMean;
+        weights[at] = centroidWeight;
+        return at + 1;
+    }
+
+    // ---------------- Results ----------------
+
+    long count() {
+        return count;
+    }
+
+    double mean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /** Population standard deviation. */
+    double standardDeviation() {
+        return count == 0 ? Double.NaN : Math.sqrt(m2 / count);
+    }
+
+    double min() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    double max() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Approximate value at quantile q (0..1), interpolating between centroid centres and
+     * out to the exact min and max; NaN if empty.
+     */
+    double quantile(double q) {
+        if (count == 0) return Double.NaN;
+        compress(null, null, 0);
+        if (q <= 0) return min;
+        if (q >= 1) return max;
+        if (centroids == 1) return means[0];
+
+        double target = q * count;
+        double first = weights[0] / 2;
+        if (target < first) {
+            return min + (means[0] - min) * (target / first);
+        }
+        double cumulative = first;
+        for (int i = 0; i < centroids - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2;
+            if (cumulative + step >= target) {
+                double t = (target - cumulative) / step;
+                return means[i] + t * (means[i + 1] - means[i]);
+            }
+            cumulative += step;
+        }
+        double last = weights[centroids - 1] / 2;
+        double t = Math.min(1, (target - cumulative) / last);
+        return means[centroids - 1] + t * (max - means[centroids - 1]);
+    }
+
+    /** Centroids currently held; a few times compression, growing with the log of count. */
+    int centroidCount() {
+        compress(null, null, 0);
+        return centroids;
+    }
+}
@@ -0,0 +1,288 @@
+/* ReportCardRenderer.java
+   Headless report cards for a whole roster: each subject's progress chart as PNG next to its summary, one HTML page per student.
+   Usage: java grading report <roster-dir> --out <dir> [--threads <n>] [--weights <file>] [--width <px>] [--height <px>]
+*/
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.category.DefaultCategoryDataset;
+
+/**
+ * Renders a report card for every per-student gradebook in a roster directory (the
+ * same layout {@link BatchGrader} reads). For each subject the card holds the summary
+ * text the main window shows and the progress chart, drawn headlessly with the same
+ * styling as the chart window and saved as PNG. Each student's card is an HTML page
+ * linking its charts, and index.html links every card. Cards get distinct file names
+ * even when students' ids only differ in characters a file name cannot hold, and a
+ * card's charts sit in a directory of the same name, numbered by subject.
+ *
+ * Students are rendered on a fixed pool whose queue is bounded, so the roster is not
+ * read ahead of the renderers. Every worker thread keeps one styled chart and one
+ * image and redraws them for each chart, instead of building and styling a chart per
+ * subject.
+ */
+final class ReportCardRenderer {
+
+    // Queued students per worker before the submitting thread renders one itself
+    private static final int QUEUE_PER_THREAD = 2;
+
+    private final Path outDir;
+    private final WeightConfig weights;
+    private final int width;
+    private final int height;
+    private final ThreadLocal<ChartCanvas> canvases;
+    // Student id -> card file name, for the index
+    private final ConcurrentSkipListMap<String, String> cards = new ConcurrentSkipListMap<>();
+    private final LongAdder charts = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private ReportCardRenderer(Path outDir, WeightConfig weights, int width, int height) {
+        this.outDir = outDir;
+        this.weights = weights;
+        this.width = width;
+        this.height = height;
+        this.canvases = ThreadLocal.withInitial(() -> new ChartCanvas(width, height));
+    }
+
+    /**
+     * Entry point for "grading report ...". Returns the process exit code.
+     */
+    static int run(String[] args) {
+        Path dir = null;
+        Path outDir = null;
+        Path weightsFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int width = 1000;
+        int height = 600;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--out" -> outDir = Path.of(args[++i]);
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--weights" -> weightsFile = Path.of(args[++i]);
+                    case "--width" -> width = Integer.parseInt(args[++i]);
+                    case "--height" -> height = Integer.parseInt(args[++i]);
+                    default -> {
+                        if (args[i].startsWith("--") || dir != null) throw new IllegalArgumentException(args[i]);
+                        dir = Path.of(args[i]);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            dir = null;
+        }
+        if (dir == null || !Files.isDirectory(dir) || outDir == null || threads < 1 || width < 100 || height < 100) {
+            System.err.println("Usage: java grading report <roster-dir> --out <dir> [--threads <n>] [--weights <file>] [--width <px>] [--height <px>]");
+            return 2;
+        }
+
+        // Draw into images only; no display is needed
+        System.setProperty("java.awt.headless", "true");
+        try {
+            WeightConfig weights = weightsFile == null ? WeightConfig.defaults() : WeightConfig.load(weightsFile);
+            List<Path> files = BatchGrader.listGradebooks(dir);
+            Files.createDirectories(outDir);
+            ReportCardRenderer renderer = new ReportCardRenderer(outDir, weights, width, height);
+
+            long start = System.nanoTime();
+            renderer.renderAll(files, threads);
+            renderer.writeIndex();
+            renderer.report(System.nanoTime() - start);
+            return renderer.failed.sum() == 0 ? 0 : 1;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Report card export failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private void renderAll(List<Path> files, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), r -> {
+                    Thread t = new Thread(r, "report-card-renderer");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        // Named up front, in roster order, so the names do not depend on which worker runs first
+        Set<String> taken = new HashSet<>();
+        try {
+            for (Path file : files) {
+                String student = BatchGrader.studentId(file);
+                String card = fileName(student);
+                // Lower case as well, for file systems that ignore case
+                for (int n = 2; !taken.add(card.toLowerCase(Locale.ROOT)); n++) {
+                    card = fileName(student) + "-" + n;
+                }
+                String cardName = card;
+                pool.execute(() -> renderStudent(file, student, cardName));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes one student's card as card.html and its charts as card/1.png, card/2.png, ...
+     * Failures are counted, not thrown, so one bad gradebook does not stop the rest.
+     */
+    private void renderStudent(Path file, String student, String card) {
+        try {
+            GradeStore store = CsvGradeLoader.load(file).store;
+            // Per student: the cache is not thread-safe and each store is read once
+            ChartSeriesCache seriesCache = new ChartSeriesCache();
+            ChartCanvas canvas = canvases.get();
+
+            StringBuilder html = new StringBuilder(4096);
+            html.append("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Report card: ");
+            appendHtml(html, student);
+            html.append("</title></head>\n<body>\n<h1>Report card: ");
+            appendHtml(html, student);
+            html.append("</h1>\n");
+
+            if (store.subjectCount() > 0) {
+                Files.createDirectories(outDir.resolve(card));
+            }
+            int index = 0;
+            for (GradeStore.SubjectGrades grades : store.subjects()) {
+                WeightScheme.Plan plan = weights.forSubject(grades.subject).plan(store);
+                String text = grading.formatSummary(grades.subject, null, SubjectSummary.of(grades, plan));
+
+                String png = card + "/" + ++index + ".png";
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outDir.resolve(png)), 1 << 16)) {
+                    canvas.draw(grades.subject, seriesCache.get(store, grades, plan), out);
+                }
+                charts.increment();
+
+                html.append("<h2>");
+                appendHtml(html, grades.subject);
+                html.append("</h2>\n<pre>");
+                appendHtml(html, text);
+                html.append("</pre>\n<img src=\"");
+                appendHtml(html, png);
+                html.append("\" width=\"").append(width).append("\" height=\"").append(height).append("\" alt=\"Progress chart\">\n");
+            }
+            if (store.subjectCount() == 0) {
+                html.append("<p>No grades entered yet.</p>\n");
+            }
+            html.append("</body></html>\n");
+
+            Files.writeString(outDir.resolve(card + ".html"), html, StandardCharsets.UTF_8);
+            cards.put(student, card + ".html");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Skipping " + file + ": " + e.getMessage());
+            failed.increment();
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        StringBuilder html = new StringBuilder(256 + 64 * cards.size());
+        html.append("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Report cards</title></head>\n<body>\n<h1>Report cards</h1>\n<ul>\n");
+        cards.forEach((student, card) -> {
+            html.append("<li><a href=\"");
+            appendHtml(html, card);
+            html.append("\">");
+            appendHtml(html, student);
+            html.append("</a></li>\n");
+        });
+        html.append("</ul>\n</body></html>\n");
+        try (Writer w = Files.newBufferedWriter(outDir.resolve("index.html"), StandardCharsets.UTF_8)) {
+            w.append(html);
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        System.err.printf(Locale.ROOT, "Rendered %d report card(s) with %d chart(s) in %.3f s: %.1f reports/s, %.1f charts/s%n",
+                cards.size(), charts.sum(), seconds, cards.size() / seconds, charts.sum() / seconds);
+        if (failed.sum() > 0) {
+            System.err.println(failed.sum() + " gradebook(s) could not be rendered.");
+        }
+    }
+
+    // ---------------- Charts ----------------
+
+    /**
+     * One worker's styled chart and the image it is drawn into, reused for every chart
+     * that worker renders.
+     */
+    private static final class ChartCanvas {
+        final DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        final JFreeChart chart = ProgressChart.create("", dataset);
+        final BufferedImage image;
+        final Graphics2D g2;
+        final Rectangle2D area;
+
+        ChartCanvas(int width, int height) {
+            this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            this.g2 = image.createGraphics();
+            this.area = new Rectangle2D.Double(0, 0, width, height);
+        }
+
+        /**
+         * Draws the subject's series, downsampled to about one point per pixel, and writes it as PNG.
+         */
+        void draw(String subject, ChartSeriesCache.Series series, OutputStream out) throws IOException {
+            // One change event for the whole update instead of one per value
+            chart.setNotify(false);
+            chart.setTitle(ProgressChart.title(subject));
+            ProgressChart.fill(dataset, series,
+                    ChartSeriesCache.downsample(series.percents(), series.size(), image.getWidth()));
+            chart.setNotify(true);
+            // The chart paints its own background over the whole area
+            chart.draw(g2, area);
+            ChartUtils.writeBufferedImageAsPNG(out, image);
+        }
+    }
+
+    // ---------------- Output ----------------
+
+    /** A file name made of s with anything but letters, digits, '-' and '_' replaced. */
+    static String fileName(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) || c == '-' || c == '_' ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    private static void appendHtml(StringBuilder sb, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '&' -> sb.append("&amp;");
+                case '"' -> sb.append("&quot;");
+                default -> sb.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/* StreamingSummary.java
+   Grade summaries for every subject in one bounded-memory pass over a gradebook CSV, without loading it.
+   Usage: java grading summary <csv> [--weights <file>] [--format text|csv]
+*/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes what the summary panel shows for each subject (category averages, weighted
+ * final grade, letter) straight from the CSV. Rows are parsed by
+ * {@link CsvGradeLoader#scan} in parallel chunks; each chunk only adds its rows into
+ * running totals per (subject, category) and keeps no row, so memory depends on the
+ * number of subjects and categories, not on the size of the file. The chunk totals are
+ * merged and then graded with each subject's weight scheme.
+ *
+ * Schemes that drop low scores need the lowest few scores per category, so the totals
+ * also keep the K lowest, where K is the most any scheme drops.
+ */
+final class StreamingSummary {
+
+    /**
+     * Every grade seen in one (subject, category): count and sum of score fractions, and
+     * the lowest ones in ascending order.
+     */
+    static final class CategoryTotals {
+        long count;
+        double sum;
+        final double[] lowest;
+
+        CategoryTotals(int keepLowest) {
+            this.lowest = new double[keepLowest];
+        }
+
+        void add(double percent) {
+            SubjectSummary.insertLowest(lowest, (int) Math.min(count, lowest.length), percent);
+            count++;
+            sum += percent;
+        }
+
+        /**
+         * Folds other into this; other is left unchanged.
+         */
+        void merge(CategoryTotals other) {
+            int kept = (int) Math.min(count, lowest.length);
+            int otherKept = (int) Math.min(other.count, other.lowest.length);
+            for (int i = 0; i < otherKept; i++) {
+                SubjectSummary.insertLowest(lowest, kept, other.lowest[i]);
+                kept = Math.min(kept + 1, lowest.length);
+            }
+            count += other.count;
+            sum += other.sum;
+        }
+
+        /** The kept lowest fractions, min(count, K) of them. */
+        double[] lowest() {
+            int kept = (int) Math.min(count, lowest.length);
+            return kept == lowest.length ? lowest : Arrays.copyOf(lowest, kept);
+        }
+    }
+
+    /**
+     * One chunk's totals, indexed by the chunk's own subject and category ids. Only the
+     * subject and category text is interned; names are never copied out of the buffer.
+     */
+    private static final class ChunkTotals implements CsvGradeLoader.RowSink {
+        final int keepLowest;
+        final CsvGradeLoader.StringTable subjects = new CsvGradeLoader.StringTable();
+        final CsvGradeLoader.StringTable categories = new CsvGradeLoader.StringTable();
+        // subjectId -> categoryId -> totals
+        final List<CategoryTotals[]> totals = new ArrayList<>();
+        long rows;
+        long skipped;
+
+        ChunkTotals(int keepLowest) {
+            this.keepLowest = keepLowest;
+        }
+
+        @Override
+        public void row(ByteBuffer buf, int[] fieldStart, int[] fieldEnd, int score, int outOf, int epochDay) {
+            int subjectId = subjects.id(buf, fieldStart[CsvGradeLoader.SUBJECT_FIELD], fieldEnd[CsvGradeLoader.SUBJECT_FIELD]);
+            int categoryId = categories.id(buf, fieldStart[CsvGradeLoader.CATEGORY_FIELD], fieldEnd[CsvGradeLoader.CATEGORY_FIELD]);
+            if (subjectId == totals.size()) {
+                totals.add(new CategoryTotals[Math.max(4, categoryId + 1)]);
+            }
+            CategoryTotals[] byCategory = totals.get(subjectId);
+            if (categoryId >= byCategory.length) {
+                byCategory = Arrays.copyOf(byCategory, Math.max(categoryId + 1, byCategory.length * 2));
+                totals.set(subjectId, byCategory);
+            }
+            CategoryTotals t = byCategory[categoryId];
+            if (t == null) {
+                t = new CategoryTotals(keepLowest);
+                byCategory[categoryId] = t;
+            }
+            t.add((double) score / outOf);
+            rows++;
+        }
+
+        @Override
+        public void skipped() {
+            skipped++;
+        }
+    }
+
+    // Subject -> category -> totals over the whole file, both sorted
+    private final Map<String, Map<String, CategoryTotals>> bySubject = new TreeMap<>();
+    private final int keepLowest;
+    long rows;
+    long skipped;
+
+    private StreamingSummary(int keepLowest) {
+        this.keepLowest = keepLowest;
+    }
+
+    /**
+     * Reads file in one parallel pass and returns the merged totals. weights decides how
+     * many low scores are kept per category.
+     */
+    static StreamingSummary scan(Path file, WeightConfig weights) throws IOException {
+        int keepLowest = maxDrop(weights);
+        StreamingSummary merged = new StreamingSummary(keepLowest);
+        for (ChunkTotals chunk : CsvGradeLoader.scan(file, () -> new ChunkTotals(keepLowest))) {
+            merged.merge(chunk);
+        }
+        return merged;
+    }
+
+    private static int maxDrop(WeightConfig weights) {
+        int max = 0;
+        for (int drop : WeightScheme.DEFAULT.dropLowest) max = Math.max(max, drop);
+        for (WeightScheme scheme : weights.schemes()) {
+            for (int drop : scheme.dropLowest) max = Math.max(max, drop);
+        }
+        return max;
+    }
+
+    private void merge(ChunkTotals chunk) {
+        for (int s = 0; s < chunk.totals.size(); s++) {
+            Map<String, CategoryTotals> categories = bySubject.computeIfAbsent(chunk.subjects.value(s), k -> new TreeMap<>());
+            CategoryTotals[] byCategory = chunk.totals.get(s);
+            for (int c = 0; c < byCategory.length; c++) {
+                if (byCategory[c] == null) continue;
+                categories.computeIfAbsent(chunk.categories.value(c), k -> new CategoryTotals(keepLowest))
+                        .merge(byCategory[c]);
+            }
+        }
+        rows += chunk.rows;
+        skipped += chunk.skipped;
+    }
+
+    /**
+     * Grades every subject with its scheme from weights, in subject order. Throws
+     * ArithmeticException if a category has more grades than a summary can count.
+     */
+    List<SubjectSummary> summaries(WeightConfig weights) {
+        List<SubjectSummary> summaries = new ArrayList<>(bySubject.size());
+        bySubject.forEach((subject, categories) -> {
+            WeightScheme scheme = weights.forSubject(subject);
+            int n = scheme.categories.length;
+            int[] counts = new int[n];
+            double[] sums = new double[n];
+            double[][] lowest = new double[n][];
+            for (int c = 0; c < n; c++) {
+                CategoryTotals t = categories.get(scheme.categories[c]);
+                if (t == null) {
+                    lowest[c] = new double[0];
+                } else {
+                    if (t.count > Integer.MAX_VALUE) {
+                        throw new ArithmeticException(subject + " / " + scheme.categories[c] + " has " + t.count
+                                + " grades, more than the " + Integer.MAX_VALUE + " a summary can count");
+                    }
+                    counts[c] = (int) t.count;
+                    sums[c] = t.sum;
+                    lowest[c] = t.lowest();
+                }
+            }
+            summaries.add(SubjectSummary.ofTotals(subject, scheme, counts, sums, lowest));
+        });
+        return summaries;
+    }
+
+    /**
+     * Entry point for "grading summary ...". Returns the process exit code.
+     */
+    static int run(String[] args) {
+        Path file = null;
+        Path weightsFile = null;
+        String format = "text";
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--weights" -> weightsFile = Path.of(args[++i]);
+                    case "--format" -> format = args[++i].toLowerCase(Locale.ROOT);
+                    default -> {
+                        if (args[i].startsWith("--") || file != null) throw new IllegalArgumentException(args[i]);
+                        file = Path.of(args[i]);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            file = null;
+        }
+        if (file == null || !Files.isRegularFile(file) || !(format.equals("text") || format.equals("csv"))) {
+            System.err.println("Usage: java grading summary <csv> [--weights <file>] [--format text|csv]");
+            return 2;
+        }
+
+        try {
+            WeightConfig weights = weightsFile == null ? WeightConfig.defaults() : WeightConfig.load(weightsFile);
+            long start = System.nanoTime();
+            StreamingSummary totals = scan(file, weights);
+            List<SubjectSummary> summaries = totals.summaries(weights);
+            long elapsed = System.nanoTime() - start;
+
+            StringBuilder out = new StringBuilder();
+            if (format.equals("csv")) {
+                out.append("Subject,WeightUsed,FinalGrade,Letter\n");
+                for (SubjectSummary summary : summaries) {
+                    out.append(BatchGrader.csvField(summary.subject)).append(',')
+                            .append(String.format(Locale.ROOT, "%.2f,%.2f,", summary.totalCategoryWeightUsed, summary.finalGrade))
+                            .append(summary.letterGrade).append('\n');
+                }
+            } else {
+                for (SubjectSummary summary : summaries) {
+                    out.append(grading.formatSummary(summary.subject, null, summary)).append('\n');
+                }
+            }
+            System.out.print(out);
+            System.out.flush();
+
+            Runtime rt = Runtime.getRuntime();
+            double seconds = Math.max(elapsed, 1) / 1e9;
+            System.err.printf(Locale.ROOT, "Summarized %d subject(s) from %d row(s) (%d skipped) in %.3f s: %.0f rows/s, heap in use %d MB%n",
+                    summaries.size(), totals.rows, totals.skipped, seconds, totals.rows / seconds,
+                    (rt.totalMemory() - rt.freeMemory()) >> 20);
+            return 0;
+        } catch (IOException | UncheckedIOException | ArithmeticException e) {
+            System.err.println("Summary failed: " + e.getMessage());
+            return 1;
+        }
+    }
+}
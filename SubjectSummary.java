@@ -0,0 +1,204 @@
+/* SubjectSummary.java
+   Category-weighted final grade for one subject, computed from running aggregates.
+*/
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The numbers shown in the grade summary: per-category averages and contributions,
+ * the weight actually in use, the scaled final grade and its letter.
+ * Built from the per-category count and sum kept by {@link GradeStore.SubjectGrades},
+ * so it costs O(categories) regardless of how many grades the subject has. Schemes
+ * that drop low scores need the individual grades and scan the subject's rows once.
+ * {@link #ofTotals} builds one from totals gathered without a store (streaming mode).
+ */
+final class SubjectSummary {
+    final String subject;
+    // Subject version and scheme this summary was computed from
+    final long version;
+    final WeightScheme scheme;
+    final String[] categories;
+    final double[] weights;
+    // Grades counted per category and the sum of their score fractions, after dropping
+    final int[] counts;
+    final double[] sums;
+    final int[] dropped;
+    // Per category, the lowest min(drop, grades) score fractions in ascending order;
+    // empty for categories that drop nothing
+    final double[][] lowest;
+    // Average percentage per category as a fraction, NaN when the category has no grades
+    final double[] averages;
+    final double[] contributions;
+    final double totalCategoryWeightUsed;
+    final double finalGrade;
+    final String letterGrade;
+
+    private SubjectSummary(String subject, long version, WeightScheme scheme, int[] counts, int[] dropped,
+                           double[] sums, double[][] lowest) {
+        int n = scheme.categories.length;
+        this.subject = subject;
+        this.version = version;
+        this.scheme = scheme;
+        this.categories = scheme.categories;
+        this.weights = scheme.weights;
+        this.counts = counts;
+        this.sums = sums;
+        this.dropped = dropped;
+        this.lowest = lowest;
+        this.averages = new double[n];
+        this.contributions = new double[n];
+
+        double finalWeightedGrade = 0.0;
+        double weightUsed = 0.0;
+        for (int c = 0; c < n; c++) {
+            if (counts[c] > 0) {
+                // Average percentage score for this category, then CategoryAvg * CategoryWeight
+                averages[c] = sums[c] / counts[c];
+                contributions[c] = averages[c] * weights[c];
+                finalWeightedGrade += contributions[c];
+                weightUsed += weights[c];
+            } else {
+                averages[c] = Double.NaN;
+            }
+        }
+        this.totalCategoryWeightUsed = weightUsed;
+
+        // Final grade scaled to 100% based on categories with assignments
+        this.finalGrade = weightUsed > 0 ? (finalWeightedGrade / weightUsed) * 100.0 : 0.0;
+        this.letterGrade = grading.computeGrade((int) Math.round(finalGrade));
+    }
+
+    /**
+     * True if this summary is still correct for the subject's current grades under scheme.
+     */
+    boolean isCurrent(GradeStore.SubjectGrades grades, WeightScheme scheme) {
+        return version == grades.version() && (this.scheme == scheme || this.scheme.sameRules(scheme));
+    }
+
+    /**
+     * Computes the summary for one subject. Call on the thread that owns the store.
+     */
+    static SubjectSummary of(GradeStore.SubjectGrades grades, WeightScheme.Plan plan) {
+        if (plan.dropsAny) {
+            return of(grades.columns(), plan);
+        }
+        int n = plan.slots();
+        int[] counts = new int[n];
+        double[] sums = new double[n];
+        for (int c = 0; c < n; c++) {
+            int categoryId = plan.categoryIds[c];
+            if (categoryId >= 0) {
+                counts[c] = grades.categoryCount(categoryId);
+                sums[c] = grades.categorySum(categoryId);
+            }
+        }
+        return new SubjectSummary(grades.subject, grades.version(), plan.scheme, counts, new int[n], sums,
+                new double[n][0]);
+    }
+
+    /**
+     * Computes the summary from a captured column set in one pass over its rows.
+     * Safe off the thread that owns the store.
+     */
+    static SubjectSummary of(GradeStore.SubjectGrades.Columns columns, WeightScheme.Plan plan) {
+        return of(columns, plan, null);
+    }
+
+    /**
+     * Computes the summary over only the given rows of columns (all rows if null), e.g.
+     * a date range from the subject's {@link DateIndex}.
+     */
+    static SubjectSummary of(GradeStore.SubjectGrades.Columns columns, WeightScheme.Plan plan, int[] rows) {
+        int n = plan.slots();
+        int[] counts = new int[n];
+        double[] sums = new double[n];
+        // Per slot, the lowest percentages seen so far in ascending order
+        double[][] lowest = new double[n][];
+        for (int c = 0; c < n; c++) {
+            lowest[c] = new double[plan.scheme.dropLowest[c]];
+        }
+
+        int[] categoryIds = columns.categoryIds;
+        int[] scores = columns.scores;
+        int[] outOfs = columns.outOfs;
+        int count = rows == null ? columns.size : rows.length;
+        for (int i = 0; i < count; i++) {
+            int row = rows == null ? i : rows[i];
+            int c = plan.slot(categoryIds[row]);
+            if (c < 0) continue;
+            double percent = (double) scores[row] / outOfs[row];
+            insertLowest(lowest[c], counts[c], percent);
+            counts[c]++;
+            sums[c] += percent;
+        }
+        return dropLowest(columns.subject, columns.version, plan.scheme, counts, sums, lowest);
+    }
+
+    /**
+     * Builds the summary from per-slot totals of every grade in each of scheme's
+     * categories: counts[c] grades summing to sums[c] (score fractions), and lowest[c]
+     * holding at least the min(drop, count) lowest fractions in ascending order. Used
+     * when the grades were aggregated without a store; the version is -1.
+     */
+    static SubjectSummary ofTotals(String subject, WeightScheme scheme, int[] counts, double[] sums,
+                                   double[][] lowest) {
+        int n = scheme.categories.length;
+        double[][] low = new double[n][];
+        for (int c = 0; c < n; c++) {
+            low[c] = Arrays.copyOf(lowest[c], Math.min(lowest[c].length, scheme.dropLowest[c]));
+        }
+        return dropLowest(subject, -1, scheme, counts.clone(), sums.clone(), low);
+    }
+
+    /**
+     * Records percent among low, the lowest of the kept (so far counted) values in
+     * ascending order, if it is one of the low.length lowest.
+     */
+    static void insertLowest(double[] low, int kept, double percent) {
+        if (low.length == 0) return;
+        kept = Math.min(kept, low.length);
+        if (kept < low.length || percent < low[kept - 1]) {
+            int j = kept < low.length ? kept : kept - 1;
+            while (j > 0 && low[j - 1] > percent) {
+                low[j] = low[j - 1];
+                j--;
+            }
+            low[j] = percent;
+        }
+    }
+
+    /**
+     * Drops up to N lowest per category from counts and sums (in place), always keeping
+     * at least one grade per category.
+     */
+    private static SubjectSummary dropLowest(String subject, long version, WeightScheme scheme, int[] counts,
+                                             double[] sums, double[][] lowest) {
+        int n = counts.length;
+        int[] dropped = new int[n];
+        for (int c = 0; c < n; c++) {
+            dropped[c] = Math.min(lowest[c].length, Math.max(counts[c] - 1, 0));
+            for (int i = 0; i < dropped[c]; i++) {
+                sums[c] -= lowest[c][i];
+            }
+            if (lowest[c].length > counts[c]) {
+                lowest[c] = Arrays.copyOf(lowest[c], counts[c]);
+            }
+            counts[c] -= dropped[c];
+        }
+        return new SubjectSummary(subject, version, scheme, counts, dropped, sums, lowest);
+    }
+
+    /**
+     * Recomputes many subjects in parallel from captured columns; plans.get(i) grades
+     * subjects.get(i). Safe off the thread that owns the store.
+     */
+    static List<SubjectSummary> computeAll(List<GradeStore.SubjectGrades.Columns> subjects,
+                                           List<WeightScheme.Plan> plans) {
+        return IntStream.range(0, subjects.size())
+                .parallel()
+                .mapToObj(i -> of(subjects.get(i), plans.get(i)))
+                .toList();
+    }
+}
@@ -0,0 +1,199 @@
+/* TargetSolver.java
+   "What do I need?": the lowest score on one more assignment that reaches a target letter.
+*/
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Solves for the minimum score on a hypothetical next assignment from a
+ * {@link SubjectSummary}, without touching the grade store. The final grade is linear
+ * in the new score within its category, so each answer is a closed-form O(1)
+ * computation; drop-lowest categories only add a comparison with the highest score
+ * the new one could displace.
+ */
+final class TargetSolver {
+
+    private TargetSolver() {
+    }
+
+    /**
+     * One hypothetical: an assignment out of outOf in category, aiming for letter.
+     */
+    static final class Query {
+        final String subject;
+        final String category;
+        final int outOf;
+        final String letter;
+
+        Query(String subject, String category, int outOf, String letter) {
+            this.subject = subject;
+            this.category = category;
+            this.outOf = outOf;
+            this.letter = letter;
+        }
+    }
+
+    static final class Answer {
+        final Query query;
+        // Lowest whole score that reaches the letter; 0 means any score does
+        final int requiredScore;
+        // False if even a perfect score falls short (requiredScore is then above outOf)
+        final boolean reachable;
+        // Final grade with requiredScore (or a perfect score, if unreachable)
+        final double resultingGrade;
+        // Why the query could not be answered, or null
+        final String error;
+
+        private Answer(Query query, int requiredScore, boolean reachable, double resultingGrade, String error) {
+            this.query = query;
+            this.requiredScore = requiredScore;
+            this.reachable = reachable;
+            this.resultingGrade = resultingGrade;
+            this.error = error;
+        }
+
+        static Answer error(Query query, String error) {
+            return new Answer(query, -1, false, Double.NaN, error);
+        }
+    }
+
+    /**
+     * Answers one query against the summary of its subject.
+     */
+    static Answer solve(SubjectSummary summary, Query query) {
+        int slot = -1;
+        for (int c = 0; c < summary.categories.length; c++) {
+            if (summary.categories[c].equals(query.category)) slot = c;
+        }
+        if (slot < 0) {
+            return Answer.error(query, "Category " + query.category + " is not weighted in " + summary.subject);
+        }
+        if (query.outOf <= 0) {
+            return Answer.error(query, "Out Of must be positive");
+        }
+        int threshold = grading.gradeThreshold(query.letter);
+        if (threshold < 0) {
+            return Answer.error(query, "Unknown letter grade " + query.letter);
+        }
+        return solve(new Terms(summary, slot), query, threshold);
+    }
+
+    /**
+     * Answers many queries in one pass over the array; summaries are matched by subject.
+     * A query for a subject without a summary gets an error answer.
+     */
+    static Answer[] solveAll(List<SubjectSummary> summaries, Query[] queries) {
+        Map<String, SubjectSummary> bySubject = new HashMap<>(summaries.size() * 2);
+        for (SubjectSummary summary : summaries) {
+            bySubject.put(summary.subject, summary);
+        }
+        Answer[] answers = new Answer[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            SubjectSummary summary = bySubject.get(queries[i].subject);
+            answers[i] = summary == null
+                    ? Answer.error(queries[i], "No grades for " + queries[i].subject)
+                    : solve(summary, queries[i]);
+        }
+        return answers;
+    }
+
+    // ---------------- Solving ----------------
+
+    /**
+     * The final grade as a function of one new score fraction p in one category:
+     * 100 * (others + weight * kept(p) / keptCount) / weightUsed, where kept(p) is
+     * base + p, or base + max(p, displaced) when the category drops low scores.
+     */
+    private static final class Terms {
+        final double others;
+        final double weight;
+        final double weightUsed;
+        final double base;
+        final int keptCount;
+        // The score that gets dropped instead of a better new one; NaN if nothing is dropped
+        final double displaced;
+
+        Terms(SubjectSummary s, int slot) {
+            double others = 0;
+            for (int c = 0; c < s.categories.length; c++) {
+                if (c != slot && s.counts[c] > 0) others += s.contributions[c];
+            }
+            this.others = others;
+            this.weight = s.weights[slot];
+            this.weightUsed = s.totalCategoryWeightUsed + (s.counts[slot] == 0 ? weight : 0);
+
+            double[] lowest = s.lowest[slot];
+            int rawCount = s.counts[slot] + s.dropped[slot];
+            if (lowest.length == 0) {
+                base = s.sums[slot];
+                keptCount = s.counts[slot] + 1;
+                displaced = Double.NaN;
+            } else {
+                // Adding one grade drops all of lowest plus the new one but keeps the larger of
+                // the new score and the highest of lowest; lowest[dropped..] is currently kept
+                double stillKept = 0;
+                for (int i = s.dropped[slot]; i < lowest.length; i++) {
+                    stillKept += lowest[i];
+                }
+                base = s.sums[slot] - stillKept;
+                keptCount = rawCount + 1 - lowest.length;
+                displaced = lowest[lowest.length - 1];
+            }
+        }
+
+        double grade(double p) {
+            if (weightUsed <= 0) return 0;
+            double kept = Double.isNaN(displaced) ? base + p : base + Math.max(p, displaced);
+            return (others + weight * kept / keptCount) / weightUsed * 100.0;
+        }
+
+        /**
+         * Smallest p with grade(p) >= target, ignoring the 0..1 range; -inf if any p works,
+         * +inf if none does.
+         */
+        double minimumFraction(double target) {
+            if (weight <= 0) {
+                return grade(0) >= target ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            }
+            double needKept = (target / 100.0 * weightUsed - others) * keptCount / weight;
+            if (!Double.isNaN(displaced) && base + displaced >= needKept) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            return needKept - base;
+        }
+    }
+
+    private static Answer solve(Terms terms, Query query, int threshold) {
+        // computeGrade rounds, so half a point below the threshold is enough
+        double target = threshold - 0.5;
+        double p = terms.minimumFraction(target);
+
+        int score;
+        if (p == Double.NEGATIVE_INFINITY) {
+            score = 0;
+        } else if (p == Double.POSITIVE_INFINITY) {
+            score = Integer.MAX_VALUE;
+        } else {
+            score = (int) Math.max(0, Math.min(Math.ceil(p * query.outOf), Integer.MAX_VALUE - 1L));
+            // Correct for floating-point error in the closed form, checking the rounded grade itself
+            if (score <= query.outOf + 1) {
+                while (score <= query.outOf && !reaches(terms, score, query.outOf, threshold)) {
+                    score++;
+                }
+                while (score > 0 && reaches(terms, score - 1, query.outOf, threshold)) {
+                    score--;
+                }
+            }
+        }
+
+        boolean reachable = score <= query.outOf;
+        double grade = terms.grade((double) Math.min(score, query.outOf) / query.outOf);
+        return new Answer(query, score, reachable, grade, null);
+    }
+
+    private static boolean reaches(Terms terms, int score, int outOf, int threshold) {
+        return Math.round(terms.grade((double) score / outOf)) >= threshold;
+    }
+}
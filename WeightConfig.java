@@ -0,0 +1,207 @@
+/* WeightConfig.java
+   Weight schemes and their subject assignments, read from gradeweights.conf.
+*/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which weight scheme each subject is graded with. File format:
+ *
+ * <pre>
+ * # Weights are percentages; "drop N" ignores the N lowest scores of a category
+ * [default]
+ * Major = 60
+ * Minor = 40
+ *
+ * [honors]
+ * Tests = 50
+ * Quizzes = 30 drop 1
+ * Homework = 20 drop 2
+ *
+ * # Subjects not listed here use [default]
+ * [subjects]
+ * AP Calculus = honors
+ * </pre>
+ *
+ * Without a file (or without a [default] section) the default scheme is the original
+ * Major 60% / Minor 40%. Instances are immutable.
+ */
+final class WeightConfig {
+
+    private static final String SUBJECTS_SECTION = "subjects";
+
+    final WeightScheme defaultScheme;
+    private final Map<String, WeightScheme> schemes;
+    private final Map<String, WeightScheme> bySubject;
+
+    private WeightConfig(Map<String, WeightScheme> schemes, Map<String, WeightScheme> bySubject) {
+        this.schemes = Collections.unmodifiableMap(schemes);
+        this.bySubject = Collections.unmodifiableMap(bySubject);
+        this.defaultScheme = schemes.getOrDefault(WeightScheme.DEFAULT.name, WeightScheme.DEFAULT);
+    }
+
+    static WeightConfig defaults() {
+        Map<String, WeightScheme> schemes = new LinkedHashMap<>();
+        schemes.put(WeightScheme.DEFAULT.name, WeightScheme.DEFAULT);
+        return new WeightConfig(schemes, new LinkedHashMap<>());
+    }
+
+    /**
+     * Reads the configuration, or returns the defaults if the file does not exist.
+     */
+    static WeightConfig load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader, file.getFileName().toString());
+        } catch (NoSuchFileException e) {
+            return defaults();
+        }
+    }
+
+    private static WeightConfig parse(BufferedReader reader, String source) throws IOException {
+        Map<String, WeightScheme> schemes = new LinkedHashMap<>();
+        Map<String, String> subjectSchemes = new LinkedHashMap<>();
+
+        String section = null;
+        List<String> categories = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        List<Integer> drops = new ArrayList<>();
+
+        String line;
+        int lineNumber = 0;
+        while (true) {
+            line = reader.readLine();
+            lineNumber++;
+            String trimmed = line == null ? null : line.strip();
+            if (trimmed != null && (trimmed.isEmpty() || trimmed.startsWith("#"))) continue;
+
+            // A new section (or the end of the file) completes the scheme being read
+            if (trimmed == null || trimmed.startsWith("[")) {
+                if (section != null && !section.equals(SUBJECTS_SECTION)) {
+                    if (categories.isEmpty()) {
+                        throw new IOException(source + ": scheme [" + section + "] has no categories");
+                    }
+                    schemes.put(section, new WeightScheme(section,
+                            categories.toArray(new String[0]),
+                            weights.stream().mapToDouble(Double::doubleValue).toArray(),
+                            drops.stream().mapToInt(Integer::intValue).toArray()));
+                }
+                if (trimmed == null) break;
+
+                if (!trimmed.endsWith("]") || trimmed.length() < 3) {
+                    throw new IOException(source + " line " + lineNumber + ": bad section header: " + trimmed);
+                }
+                section = trimmed.substring(1, trimmed.length() - 1).strip();
+                if (schemes.containsKey(section)) {
+                    throw new IOException(source + " line " + lineNumber + ": duplicate scheme [" + section + "]");
+                }
+                categories.clear();
+                weights.clear();
+                drops.clear();
+                continue;
+            }
+
+            int eq = trimmed.indexOf('=');
+            if (section == null || eq <= 0) {
+                throw new IOException(source + " line " + lineNumber + ": expected \"name = value\" inside a section: " + trimmed);
+            }
+            String key = trimmed.substring(0, eq).strip();
+            String value = trimmed.substring(eq + 1).strip();
+
+            if (section.equals(SUBJECTS_SECTION)) {
+                subjectSchemes.put(key, value);
+                continue;
+            }
+
+            // "<weight>" or "<weight> drop <n>"
+            String[] parts = value.split("\\s+");
+            try {
+                double weight = Double.parseDouble(parts[0]);
+                int drop = 0;
+                if (parts.length == 3 && parts[1].equalsIgnoreCase("drop")) {
+                    drop = Integer.parseInt(parts[2]);
+                } else if (parts.length != 1) {
+                    throw new NumberFormatException(value);
+                }
+                if (weight < 0 || drop < 0) throw new NumberFormatException(value);
+                if (categories.contains(key)) {
+                    throw new IOException(source + " line " + lineNumber + ": category " + key + " listed twice in [" + section + "]");
+                }
+                categories.add(key);
+                weights.add(weight);
+                drops.add(drop);
+            } catch (NumberFormatException e) {
+                throw new IOException(source + " line " + lineNumber + ": expected \"<weight>\" or \"<weight> drop <n>\": " + value);
+            }
+        }
+
+        Map<String, WeightScheme> bySubject = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : subjectSchemes.entrySet()) {
+            WeightScheme scheme = schemes.get(e.getValue());
+            if (scheme == null) {
+                throw new IOException(source + ": subject " + e.getKey() + " uses unknown scheme [" + e.getValue() + "]");
+            }
+            bySubject.put(e.getKey(), scheme);
+        }
+        if (!schemes.containsKey(WeightScheme.DEFAULT.name)) {
+            Map<String, WeightScheme> withDefault = new LinkedHashMap<>();
+            withDefault.put(WeightScheme.DEFAULT.name, WeightScheme.DEFAULT);
+            withDefault.putAll(schemes);
+            schemes = withDefault;
+        }
+        return new WeightConfig(schemes, bySubject);
+    }
+
+    // ---------------- Lookup ----------------
+
+    WeightScheme forSubject(String subject) {
+        return bySubject.getOrDefault(subject, defaultScheme);
+    }
+
+    Collection<WeightScheme> schemes() {
+        return schemes.values();
+    }
+
+    /**
+     * Subjects with an explicit scheme, in file order.
+     */
+    Map<String, WeightScheme> subjectSchemes() {
+        return bySubject;
+    }
+
+    /**
+     * Every category used by any scheme, default scheme first.
+     */
+    String[] allCategories() {
+        Set<String> all = new LinkedHashSet<>(List.of(defaultScheme.categories));
+        for (WeightScheme scheme : schemes.values()) {
+            all.addAll(List.of(scheme.categories));
+        }
+        return all.toArray(new String[0]);
+    }
+
+    /**
+     * The subjects whose grading rules differ between previous and this configuration.
+     */
+    List<String> changedSubjects(WeightConfig previous, Collection<String> subjects) {
+        List<String> changed = new ArrayList<>();
+        for (String subject : subjects) {
+            if (!forSubject(subject).sameRules(previous.forSubject(subject))) {
+                changed.add(subject);
+            }
+        }
+        return changed;
+    }
+}
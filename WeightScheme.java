@@ -0,0 +1,108 @@
+/* WeightScheme.java
+   Named category weights with drop-lowest rules, compiled against a store's category ids.
+*/
+
+import java.util.Arrays;
+
+/**
+ * A set of grading categories with their weights (in percent) and how many of the
+ * lowest scores to drop in each. Schemes come from {@link WeightConfig}.
+ *
+ * Before use a scheme is compiled into a {@link Plan} for a particular store, which
+ * turns category names into array slots so summaries never look names up per grade.
+ */
+final class WeightScheme {
+
+    // The original fixed weights, used when no configuration file exists
+    static final WeightScheme DEFAULT = new WeightScheme("default",
+            new String[]{"Major", "Minor"}, new double[]{60.0, 40.0}, new int[]{0, 0});
+
+    final String name;
+    final String[] categories;
+    final double[] weights;
+    final int[] dropLowest;
+
+    // Last plan handed out by plan(store)
+    private Plan plan;
+
+    WeightScheme(String name, String[] categories, double[] weights, int[] dropLowest) {
+        if (categories.length != weights.length || categories.length != dropLowest.length) {
+            throw new IllegalArgumentException("Scheme " + name + ": category, weight and drop counts differ");
+        }
+        this.name = name;
+        this.categories = categories;
+        this.weights = weights;
+        this.dropLowest = dropLowest;
+    }
+
+    /**
+     * The scheme compiled against one store: slot c is categories[c].
+     */
+    static final class Plan {
+        final WeightScheme scheme;
+        // Store category id of each slot, -1 if the store has no such category yet
+        final int[] categoryIds;
+        // Slot of each store category id, -1 if the scheme does not weight it
+        final int[] slotOf;
+        // True if any category drops scores, which needs the individual grades
+        final boolean dropsAny;
+        private final GradeStore store;
+        private final int compiledCategories;
+
+        private Plan(WeightScheme scheme, GradeStore store) {
+            this.scheme = scheme;
+            this.store = store;
+            this.compiledCategories = store.categoryCount();
+            int slots = scheme.categories.length;
+            this.categoryIds = new int[slots];
+            this.slotOf = new int[compiledCategories];
+            Arrays.fill(slotOf, -1);
+            boolean drops = false;
+            for (int c = 0; c < slots; c++) {
+                int id = store.findCategoryId(scheme.categories[c]);
+                categoryIds[c] = id;
+                if (id >= 0) slotOf[id] = c;
+                drops |= scheme.dropLowest[c] > 0;
+            }
+            this.dropsAny = drops;
+        }
+
+        int slots() {
+            return categoryIds.length;
+        }
+
+        /**
+         * Slot of a store category id, -1 if unweighted or newer than the plan.
+         */
+        int slot(int categoryId) {
+            return categoryId < slotOf.length ? slotOf[categoryId] : -1;
+        }
+    }
+
+    /**
+     * Compiles a plan for store. Use this when compiling for many stores at once.
+     */
+    Plan compile(GradeStore store) {
+        return new Plan(this, store);
+    }
+
+    /**
+     * Returns a plan for store, reusing the previous one while the store has not gained
+     * new categories since.
+     */
+    synchronized Plan plan(GradeStore store) {
+        if (plan == null || plan.store != store || plan.compiledCategories != store.categoryCount()) {
+            plan = new Plan(this, store);
+        }
+        return plan;
+    }
+
+    /**
+     * True if other grades exactly like this scheme (the name is ignored).
+     */
+    boolean sameRules(WeightScheme other) {
+        return Arrays.equals(categories, other.categories)
+                && Arrays.equals(weights, other.weights)
+                && Arrays.equals(dropLowest, other.dropLowest);
+    }
+}
@@ -0,0 +1,161 @@
+/* BenchWorkloads.java
+   Synthetic gradebooks and the app code paths measured by bench.GradeBenchmarks.
+*/
+
+import org.jfree.data.category.DefaultCategoryDataset;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Bridge between the JMH benchmarks and the app. JMH does not accept benchmarks in the
+ * default package, and classes in a named package cannot see the default-package app
+ * classes, so the benchmarks look these methods up by name. Every signature uses JDK
+ * types only; app objects are passed around as Object.
+ *
+ * Each workload mirrors what the GUI does for one action, minus the Swing parts.
+ */
+public final class BenchWorkloads {
+
+    private static final String[] SUBJECTS = {
+            "Math", "English", "Science", "History", "French", "Art", "Music", "Computer Science"};
+    private static final String[] CATEGORIES = WeightScheme.DEFAULT.categories;
+    private static final int[] OUT_OFS = {10, 20, 25, 50, 100};
+    private static final int FIRST_DAY = (int) LocalDate.of(2020, 1, 1).toEpochDay();
+    // Chart panel width used for downsampling, as in the default chart window
+    private static final int CHART_WIDTH = 1000;
+
+    private BenchWorkloads() {
+    }
+
+    // ---------------- Data ----------------
+
+    /**
+     * Returns a gradebook CSV with the given number of rows, generating it on first use.
+     * Files are cached under -Dgradehelper.bench.dir (default: java.io.tmpdir/gradehelper-bench)
+     * and are identical for the same row count, so runs are comparable.
+     */
+    public static Path dataset(int rows) throws IOException {
+        Path dir = Path.of(System.getProperty("gradehelper.bench.dir",
+                Path.of(System.getProperty("java.io.tmpdir"), "gradehelper-bench").toString()));
+        Files.createDirectories(dir);
+        Path file = dir.resolve("grades-" + rows + ".csv");
+        if (Files.exists(file)) return file;
+
+        Path tmp = dir.resolve("grades-" + rows + ".csv.tmp");
+        SplittableRandom random = new SplittableRandom(rows);
+        // Roughly one distinct assignment per 20 rows, like a real term's worth of work
+        int assignmentNames = Math.max(10, Math.min(rows / 20, 5000));
+        StringBuilder sb = new StringBuilder(64);
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            out.write(GradeStore.CSV_HEADER);
+            out.write('\n');
+            for (int i = 0; i < rows; i++) {
+                int outOf = OUT_OFS[random.nextInt(OUT_OFS.length)];
+                sb.setLength(0);
+                sb.append("Assignment ").append(random.nextInt(assignmentNames)).append(',')
+                        .append(SUBJECTS[random.nextInt(SUBJECTS.length)]).append(',')
+                        .append(CATEGORIES[random.nextInt(CATEGORIES.length)]).append(',')
+                        .append(random.nextInt(outOf + 1)).append(',')
+                        .append(outOf).append(',');
+                GradeStore.appendIsoDate(sb, FIRST_DAY + random.nextInt(4 * 365));
+                sb.append('\n');
+                out.append(sb);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * Deterministic marks in 0-100 for the letter grade benchmark.
+     */
+    public static int[] marks(int count) {
+        SplittableRandom random = new SplittableRandom(count);
+        int[] marks = new int[count];
+        for (int i = 0; i < count; i++) {
+            marks[i] = random.nextInt(101);
+        }
+        return marks;
+    }
+
+    // ---------------- Workloads ----------------
+
+    /**
+     * CSV load as done by loadGrades() when there is no usable snapshot. Returns the GradeStore.
+     */
+    public static Object load(Path csv) throws IOException {
+        return CsvGradeLoader.load(csv).store;
+    }
+
+    /**
+     * Binary snapshot load, the fast path of loadGrades(). Returns the GradeStore, or null
+     * if csv has no matching snapshot.
+     */
+    public static Object loadSnapshot(Path csv) throws IOException {
+        return GradeSnapshot.load(csv);
+    }
+
+    /**
+     * The aggregation behind updateSummary(), for every subject in the store.
+     */
+    public static Object summarizeAll(Object store) {
+        GradeStore grades = (GradeStore) store;
+        List<SubjectSummary> summaries = new ArrayList<>(grades.subjectCount());
+        for (GradeStore.SubjectGrades subject : grades.subjects()) {
+            summaries.add(SubjectSummary.of(subject, WeightScheme.DEFAULT.plan(grades)));
+        }
+        return summaries;
+    }
+
+    /**
+     * What saveGrades() does on the compactor: publish, rewrite the CSV atomically and
+     * write the snapshot. Returns the size of the written CSV.
+     */
+    public static long save(Object store, Path csv) throws IOException {
+        GradeJournal.writeCsv(((GradeStore) store).publish(), csv);
+        return Files.size(csv);
+    }
+
+    /**
+     * The data side of showChart() for the store's largest subject, starting from a cold
+     * cache: date order, running weighted grade, downsample and fill the category dataset.
+     */
+    public static Object chartPrep(Object store) {
+        GradeStore grades = (GradeStore) store;
+        GradeStore.SubjectGrades largest = null;
+        for (GradeStore.SubjectGrades subject : grades.subjects()) {
+            if (largest == null || subject.size() > largest.size()) largest = subject;
+        }
+
+        ChartSeriesCache.Series series = new ChartSeriesCache().get(grades, largest, WeightScheme.DEFAULT.plan(grades));
+        int[] points = ChartSeriesCache.downsample(series.percents(), series.size(), CHART_WIDTH);
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        for (int p : points) {
+            String label = series.label(p);
+            dataset.addValue(series.percent(p), "Assignment Score", label);
+            dataset.addValue(series.trend(p), "Weighted Final Grade", label);
+        }
+        return dataset;
+    }
+
+    /**
+     * computeGrade() over every mark; returns a value derived from the letters so the
+     * calls cannot be eliminated.
+     */
+    public static int computeGrades(int[] marks) {
+        int h = 0;
+        for (int mark : marks) {
+            h = 31 * h + grading.computeGrade(mark).hashCode();
+        }
+        return h;
+    }
+}
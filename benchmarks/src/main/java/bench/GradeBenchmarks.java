@@ -0,0 +1,149 @@
+/* GradeBenchmarks.java
+   JMH benchmarks for loading, summarising, saving, chart preparation and letter grading.
+   Build: mvn -Pbenchmarks package
+   Run:   java -jar target/benchmarks.jar [JMH options, e.g. -p rows=1000 GradeBenchmarks.load]
+*/
+
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One benchmark per user-facing action, each at 1k, 100k and 10M rows of synthetic
+ * gradebook data (see BenchWorkloads.dataset). The app lives in the default package,
+ * so the workloads are reached through method handles to BenchWorkloads.
+ *
+ * main() always adds the GC profiler so allocation rates (gc.alloc.rate.norm) are
+ * reported next to the timings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class GradeBenchmarks {
+
+    private static final MethodHandle DATASET = workload("dataset", Path.class, int.class);
+    private static final MethodHandle MARKS = workload("marks", int[].class, int.class);
+    private static final MethodHandle LOAD = workload("load", Object.class, Path.class);
+    private static final MethodHandle LOAD_SNAPSHOT = workload("loadSnapshot", Object.class, Path.class);
+    private static final MethodHandle SUMMARIZE_ALL = workload("summarizeAll", Object.class, Object.class);
+    private static final MethodHandle SAVE = workload("save", long.class, Object.class, Path.class);
+    private static final MethodHandle CHART_PREP = workload("chartPrep", Object.class, Object.class);
+    private static final MethodHandle COMPUTE_GRADES = workload("computeGrades", int.class, int[].class);
+
+    @Param({"1000", "100000", "10000000"})
+    int rows;
+
+    private Path csv;
+    private Object store;
+    private int[] marks;
+    private Path scratchDir;
+    private Path scratchCsv;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        csv = (Path) DATASET.invokeExact(rows);
+        store = (Object) LOAD.invokeExact(csv);
+        marks = (int[]) MARKS.invokeExact(rows);
+
+        // save() rewrites its target, so it gets a private copy; the copy's snapshot feeds loadSnapshot()
+        scratchDir = Files.createTempDirectory("gradehelper-bench");
+        scratchCsv = scratchDir.resolve("gradeinput.csv");
+        SAVE.invoke(store, scratchCsv);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (var files = Files.list(scratchDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(scratchDir);
+    }
+
+    // ---------------- Benchmarks ----------------
+
+    /** loadGrades() without a snapshot: parallel chunked CSV parse. */
+    @Benchmark
+    public Object load() throws Throwable {
+        return (Object) LOAD.invokeExact(csv);
+    }
+
+    /** loadGrades() with a current snapshot. */
+    @Benchmark
+    public Object loadSnapshot() throws Throwable {
+        return (Object) LOAD_SNAPSHOT.invokeExact(scratchCsv);
+    }
+
+    /** The per-subject aggregation behind updateSummary(), for all subjects. */
+    @Benchmark
+    public Object summary() throws Throwable {
+        return (Object) SUMMARIZE_ALL.invokeExact(store);
+    }
+
+    /** saveGrades(): atomic CSV rewrite plus snapshot. */
+    @Benchmark
+    public long save() throws Throwable {
+        return (long) SAVE.invokeExact(store, scratchCsv);
+    }
+
+    /** showChart() data preparation for the largest subject, cold cache. */
+    @Benchmark
+    public Object chartPrep() throws Throwable {
+        return (Object) CHART_PREP.invokeExact(store);
+    }
+
+    /** computeGrade() once per row. */
+    @Benchmark
+    public int computeGrade() throws Throwable {
+        return (int) COMPUTE_GRADES.invokeExact(marks);
+    }
+
+    // ---------------- Plumbing ----------------
+
+    private static MethodHandle workload(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            Class<?> workloads = Class.forName("BenchWorkloads");
+            return MethodHandles.publicLookup().findStatic(workloads, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Runs the benchmarks selected by the usual JMH command line, with -prof gc added.
+     */
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
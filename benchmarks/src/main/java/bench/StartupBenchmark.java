@@ -0,0 +1,134 @@
+/* StartupBenchmark.java
+   Cold-start benchmark: launches the app repeatedly and reports the time to its first frame, with and without class data sharing.
+   Build: mvn -Pcds package (app jar + AppCDS archive), then mvn -Pbenchmarks package
+   Run:   java -cp target/benchmarks.jar bench.StartupBenchmark [--runs <n>] [--jar <GradeApp.jar>] [--archive <GradeApp.jsa>]
+*/
+
+package bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each launch is a fresh JVM started with -Dgradehelper.startupProbe=true, which makes
+ * the app print "first-frame-ms=N" once the main window is open and then exit. Two
+ * numbers are kept per launch: the time from starting the process to reading that
+ * line (measured here), and N (process start to windowOpened, measured by the app).
+ *
+ * Configurations: the JDK's default CDS archive only, CDS off, and the AppCDS archive
+ * from "mvn -Pcds package" if it exists. Each gets one untimed launch first so every
+ * configuration sees a warm file cache. Needs a display; the app has no headless UI.
+ */
+public final class StartupBenchmark {
+
+    private static final String PROBE_PREFIX = "first-frame-ms=";
+    private static final long LAUNCH_TIMEOUT_SECONDS = 60;
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = 10;
+        Path jar = Path.of("target", "GradeApp.jar");
+        Path archive = Path.of("target", "GradeApp.jsa");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--jar" -> jar = Path.of(args[++i]);
+                case "--archive" -> archive = Path.of(args[++i]);
+                default -> {
+                    System.err.println("Usage: java -cp target/benchmarks.jar bench.StartupBenchmark [--runs <n>] [--jar <GradeApp.jar>] [--archive <GradeApp.jsa>]");
+                    System.exit(2);
+                }
+            }
+        }
+        if (!Files.isRegularFile(jar)) {
+            System.err.println("No app jar at " + jar + "; run mvn package first.");
+            System.exit(2);
+        }
+
+        List<String[]> configurations = new ArrayList<>();
+        configurations.add(new String[] {"Default CDS"});
+        configurations.add(new String[] {"CDS off", "-Xshare:off"});
+        if (Files.isRegularFile(archive)) {
+            configurations.add(new String[] {"AppCDS", "-XX:SharedArchiveFile=" + archive.toAbsolutePath()});
+        } else {
+            System.err.println("No AppCDS archive at " + archive + "; run mvn -Pcds package to include it.");
+        }
+
+        // An empty working directory, so no configuration loads (or rewrites) real grades
+        Path workDir = Files.createTempDirectory("gradehelper-startup");
+        try {
+            System.out.printf(Locale.ROOT, "%-12s %6s %28s %28s%n", "", "Runs",
+                    "Launch to frame ms (min/med)", "App first frame ms (min/med)");
+            for (String[] configuration : configurations) {
+                String[] flags = Arrays.copyOfRange(configuration, 1, configuration.length);
+                launch(jar, flags, workDir);
+                long[] launchToFrame = new long[runs];
+                long[] appReported = new long[runs];
+                for (int r = 0; r < runs; r++) {
+                    long[] result = launch(jar, flags, workDir);
+                    launchToFrame[r] = result[0];
+                    appReported[r] = result[1];
+                }
+                Arrays.sort(launchToFrame);
+                Arrays.sort(appReported);
+                System.out.printf(Locale.ROOT, "%-12s %6d %13d / %-12d %13d / %-12d%n", configuration[0], runs,
+                        launchToFrame[0], launchToFrame[runs / 2], appReported[0], appReported[runs / 2]);
+            }
+        } finally {
+            try (var files = Files.list(workDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(workDir);
+        }
+    }
+
+    /**
+     * Starts the app once and returns {launch to first-frame line in ms, the app's own figure}.
+     */
+    private static long[] launch(Path jar, String[] flags, Path workDir) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(flags));
+        command.add("-Dgradehelper.startupProbe=true");
+        command.add("-jar");
+        command.add(jar.toAbsolutePath().toString());
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(workDir.toFile())
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        long launchToFrame = -1;
+        long reported = -1;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith(PROBE_PREFIX)) {
+                    launchToFrame = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    reported = Long.parseLong(line.substring(PROBE_PREFIX.length()).trim());
+                }
+            }
+        }
+        if (!process.waitFor(LAUNCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("App did not exit within " + LAUNCH_TIMEOUT_SECONDS + " s: " + command);
+        }
+        if (launchToFrame < 0) {
+            throw new IOException("App exited with " + process.exitValue() + " before showing a frame: " + command);
+        }
+        return new long[] {launchToFrame, reported};
+    }
+}
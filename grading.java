@@ -1,56 +1,94 @@
 /* grading.java
-   Requires: JFreeChart jars added to your project's libraries.
-   Usage: javac grading.java
-          java grading
+   Build: mvn package   (target/GradeApp.jar, with JFreeChart copied to target/lib)
+   Usage: java -jar target/GradeApp.jar                     opens the gradebook window
+          java -jar target/GradeApp.jar <command> [args]    runs a command without the window:
+              batch, serve, import, report or summary; an unknown one lists their options
 */
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 import java.text.DecimalFormat;
 
-// JFreeChart imports
-import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartPanel;
-import org.jfree.chart.JFreeChart;
-import org.jfree.chart.plot.CategoryPlot;
-import org.jfree.chart.plot.ValueMarker;
-import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.data.category.DefaultCategoryDataset;
-import org.jfree.chart.renderer.category.LineAndShapeRenderer;
-import org.jfree.chart.axis.NumberAxis;
-import org.jfree.chart.ui.TextAnchor;
-import org.jfree.chart.ui.RectangleAnchor;
-
 
 public class grading {
 
     // CSV file path
-    private static final String CSV_FILE = "gradeinput.csv";
-
-    // Global map for fixed category weights (Major 60%, Minor 40%)
-    private static final Map<String, Double> WEIGHT_CONFIG = Map.of(
-            "Major", 60.0,
-            "Minor", 40.0
-    );
-    // Key set for category dropdown
-    private static final String[] CATEGORIES = WEIGHT_CONFIG.keySet().toArray(new String[0]);
-
-
-    // Stores grades: Map<SubjectName, List<GradeItem>>
-    private static Map<String, List<GradeItem>> allGrades = new TreeMap<>();
+    static final String CSV_FILE = "gradeinput.csv";
+
+    // Weight schemes per subject; without this file every subject uses Major 60% / Minor 40%
+    static final String WEIGHTS_FILE = "gradeweights.conf";
+    // Set to true to exit right after the first frame; see firstFrameShown()
+    static final String STARTUP_PROBE_PROPERTY = "gradehelper.startupProbe";
+    private static WeightConfig weightConfig = WeightConfig.defaults();
+    // Summaries by subject, reused while the subject and its scheme are unchanged (EDT only)
+    private static final Map<String, SubjectSummary> summaries = new HashMap<>();
+    // Subjects recomputeSummaries() is working on for allGrades (EDT only)
+    private static final Set<String> recomputing = new HashSet<>();
+
+
+    // Stores grades in per-subject primitive columns
+    private static GradeStore allGrades = new GradeStore();
+    // Write-ahead journal for new grades; folded into CSV_FILE in the background
+    private static GradeJournal journal;
+    // Picks up rows an external job appends to CSV_FILE; created by the first load
+    private static volatile GradeFileWatcher fileWatcher;
+    // Bytes of CSV_FILE whose rows are in allGrades (EDT only); a compaction only
+    // rewrites the snapshot if it appended right after them
+    private static long csvMerged;
+    // An import is merging into allGrades (EDT only); a reload asked for meanwhile waits for it
+    private static boolean importing;
+    private static boolean reloadDeferred;
+
+    // Loading and summary formatting run here; results are published back on the EDT
+    private static final ExecutorService BACKGROUND = Executors.newVirtualThreadPerTaskExecutor();
+    // Latest summary request (EDT only); older ones are cancelled and their results dropped
+    private static Future<?> pendingSummary;
+    private static long summaryGeneration;
 
     // Main components
     private static JFrame mainFrame;
     private static JTextArea resultArea;
     private static JComboBox<String> subjectDropdown;
+    private static GradeTableModel gradeTableModel;
+    private static TableRowSorter<GradeTableModel> gradeSorter;
+    private static JTextField filterField;
+    private static JTextField fromDateField;
+    private static JTextField toDateField;
+    private static JTextField lastCountField;
+    private static JMenu dataMenu;
+    private static JButton calculateButton;
+    private static JProgressBar loadProgress;
 
     public static void main(String[] args) {
+        // Headless commands, e.g. "java grading batch <roster-dir>"
+        if (args.length > 0) {
+            System.exit(runCommand(args));
+        }
+        if (Boolean.getBoolean(STARTUP_PROBE_PROPERTY) && GraphicsEnvironment.isHeadless()) {
+            System.err.println("The startup probe times the main window, which needs a display.");
+            System.exit(1);
+        }
+
         // Set System Look and Feel for a native appearance (which is typically light)
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -64,28 +102,30 @@ public class grading {
     }
 
     /**
-     * Data structure to hold a single grade item.
+     * Runs a headless command and returns the process exit code.
      */
-    static class GradeItem {
-        String name;
-        String subject;
-        String category;
-        int score;
-        int outOf;
-        String date;
-
-        GradeItem(String name, String subject, String category, int score, int outOf, String date) {
-            this.name = name;
-            this.subject = subject;
-            this.category = category;
-            this.score = score;
-            this.outOf = outOf;
-            this.date = date;
-        }
-
-        String toCSV() {
-            return String.format("%s,%s,%s,%d,%d,%s",
-                    name, subject, category, score, outOf, date);
+    private static int runCommand(String[] args) {
+        String[] rest = Arrays.copyOfRange(args, 1, args.length);
+        switch (args[0]) {
+            case "batch":
+                return BatchGrader.run(rest);
+            case "serve":
+                return GradeServer.run(rest);
+            case "import":
+                return GradeImporter.run(rest);
+            case "report":
+                return ReportCardRenderer.run(rest);
+            case "summary":
+                return StreamingSummary.run(rest);
+            default:
+                System.err.println("Unknown command: " + args[0]);
+                System.err.println("Commands:");
+                System.err.println("  batch <roster-dir> [--format csv|json] [--out <file>] [--threads <n>] [--weights <file>] [--stats <file>]");
+                System.err.println("  serve [--port <n>] [--bind <address>] [--file <csv>] [--weights <file>] [--roster <dir>]");
+                System.err.println("  import <file>... [--into <csv>] [--weights <file>] [--report <file>] [--threads <n>]");
+                System.err.println("  report <roster-dir> --out <dir> [--threads <n>] [--weights <file>] [--width <px>] [--height <px>]");
+                System.err.println("  summary <csv> [--weights <file>] [--format text|csv]");
+                return 2;
         }
     }
 
@@ -93,23 +133,39 @@ public class grading {
         mainFrame = new JFrame("Grade Management System");
         mainFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         mainFrame.setLayout(new BorderLayout());
+        mainFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                firstFrameShown();
+            }
+
+            @Override
+            public void windowClosing(WindowEvent e) {
+                // Make sure every journalled grade is on disk before the JVM exits
+                if (fileWatcher != null) fileWatcher.close();
+                if (journal != null) journal.close();
+            }
+        });
 
         // Ensure the main content pane uses the system's light background color
         mainFrame.getContentPane().setBackground(UIManager.getColor("control"));
 
-        // Load data on startup
-        loadGrades();
-
         // --- Menu Bar ---
         JMenuBar menuBar = new JMenuBar();
-        JMenu dataMenu = new JMenu("Data");
+        dataMenu = new JMenu("Data");
 
         JMenuItem addGradeItem = new JMenuItem("Add Grade Item");
         addGradeItem.addActionListener(e -> showGradeInputDialog());
 
+        JMenuItem importItem = new JMenuItem("Import...");
+        importItem.addActionListener(e -> importGrades());
+
         JMenuItem viewChartItem = new JMenuItem("View Progress Chart");
         viewChartItem.addActionListener(e -> showChart());
 
+        JMenuItem targetItem = new JMenuItem("What Do I Need?");
+        targetItem.addActionListener(e -> showTargetDialog());
+
         JMenuItem saveItem = new JMenuItem("Save Data");
         saveItem.addActionListener(e -> saveGrades());
 
@@ -117,12 +173,31 @@ public class grading {
         configureWeightsItem.setEnabled(true);
         configureWeightsItem.addActionListener(e -> showCategoryWeightsInfo());
 
+        JMenuItem reloadWeightsItem = new JMenuItem("Reload Weight Schemes");
+        reloadWeightsItem.addActionListener(e -> reloadWeightsInBackground());
+
+        JMenuItem dashboardItem = new JMenuItem("All Subjects");
+        dashboardItem.addActionListener(e -> showDashboard());
+
+        JMenuItem statisticsItem = new JMenuItem("Grade Statistics");
+        statisticsItem.addActionListener(e -> showStatistics());
+
+        JMenuItem diagnosticsItem = new JMenuItem("Diagnostics");
+        diagnosticsItem.addActionListener(e -> showDiagnostics());
+
         dataMenu.add(addGradeItem);
+        dataMenu.add(importItem);
         dataMenu.add(viewChartItem);
+        dataMenu.add(targetItem);
+        dataMenu.add(dashboardItem);
+        dataMenu.add(statisticsItem);
         dataMenu.addSeparator();
         dataMenu.add(configureWeightsItem);
+        dataMenu.add(reloadWeightsItem);
         dataMenu.addSeparator();
         dataMenu.add(saveItem);
+        dataMenu.addSeparator();
+        dataMenu.add(diagnosticsItem);
         menuBar.add(dataMenu);
 
         mainFrame.setJMenuBar(menuBar);
@@ -132,11 +207,14 @@ public class grading {
         topPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
         topPanel.setBackground(UIManager.getColor("Panel.background"));
 
-        subjectDropdown = new JComboBox<>(allGrades.keySet().toArray(new String[0]));
+        subjectDropdown = new JComboBox<>(allGrades.subjectNames());
         subjectDropdown.setFont(new Font("SansSerif", Font.BOLD, 16));
-        subjectDropdown.addItemListener(e -> updateSummary());
+        subjectDropdown.addItemListener(e -> {
+            // Each change fires DESELECTED then SELECTED; only the new selection matters
+            if (e.getStateChange() == ItemEvent.SELECTED) updateSummary();
+        });
 
-        JButton calculateButton = new JButton("Calculate Grade");
+        calculateButton = new JButton("Calculate Grade");
         calculateButton.addActionListener(e -> updateSummary());
 
         // Ensure labels are black
@@ -150,7 +228,8 @@ public class grading {
         headerPanel.add(calculateButton);
         topPanel.add(headerPanel, BorderLayout.NORTH);
 
-        resultArea = new JTextArea(10, 40);
+        // Small summary header: category breakdown and final grade
+        resultArea = new JTextArea(12, 40);
         resultArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
         resultArea.setEditable(false);
 
@@ -160,10 +239,111 @@ public class grading {
 
         JScrollPane scrollPane = new JScrollPane(resultArea);
         scrollPane.getViewport().setBackground(UIManager.getColor("TextArea.background")); // Ensure viewport is also light
-        topPanel.add(scrollPane, BorderLayout.CENTER);
+
+        // --- Assignment Table ---
+        // Backed by the subject's columns; only visible rows are formatted
+        gradeTableModel = new GradeTableModel();
+        JTable gradeTable = new JTable(gradeTableModel);
+        gradeTable.setFont(new Font("Monospaced", Font.PLAIN, 14));
+        gradeTable.setFillsViewportHeight(true);
+        gradeTable.setDefaultRenderer(Double.class, new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setHorizontalAlignment(SwingConstants.RIGHT);
+                setText(value == null ? "" : String.format("%.2f", (Double) value));
+            }
+        });
+
+        // The sorter keeps its own view-to-model index; the columns are never copied or reordered
+        gradeSorter = new TableRowSorter<>(gradeTableModel);
+        gradeTable.setRowSorter(gradeSorter);
+
+        filterField = new JTextField(20);
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyTableFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyTableFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyTableFilter();
+            }
+        });
+
+        JLabel filterLabel = new JLabel("Filter assignments:");
+        filterLabel.setForeground(Color.BLACK);
+
+        // Date range for both the summary and the table; blank means open-ended
+        DocumentListener dateRangeListener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateSummary();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateSummary();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateSummary();
+            }
+        };
+        fromDateField = new JTextField(10);
+        fromDateField.setToolTipText("YYYY-MM-DD, blank for no start date");
+        fromDateField.getDocument().addDocumentListener(dateRangeListener);
+        toDateField = new JTextField(10);
+        toDateField.setToolTipText("YYYY-MM-DD, blank for no end date");
+        toDateField.getDocument().addDocumentListener(dateRangeListener);
+        lastCountField = new JTextField(4);
+        lastCountField.setToolTipText("Only the N most recent grades in the range, blank for all");
+        lastCountField.getDocument().addDocumentListener(dateRangeListener);
+
+        JLabel fromLabel = new JLabel("From:");
+        fromLabel.setForeground(Color.BLACK);
+        JLabel toLabel = new JLabel("To:");
+        toLabel.setForeground(Color.BLACK);
+        JLabel lastLabel = new JLabel("Last:");
+        lastLabel.setForeground(Color.BLACK);
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        filterPanel.setBackground(UIManager.getColor("Panel.background"));
+        filterPanel.add(filterLabel);
+        filterPanel.add(filterField);
+        filterPanel.add(fromLabel);
+        filterPanel.add(fromDateField);
+        filterPanel.add(toLabel);
+        filterPanel.add(toDateField);
+        filterPanel.add(lastLabel);
+        filterPanel.add(lastCountField);
+
+        JPanel tablePanel = new JPanel(new BorderLayout(5, 5));
+        tablePanel.setBackground(UIManager.getColor("Panel.background"));
+        tablePanel.add(filterPanel, BorderLayout.NORTH);
+        tablePanel.add(new JScrollPane(gradeTable), BorderLayout.CENTER);
+
+        JPanel centerPanel = new JPanel(new BorderLayout(10, 10));
+        centerPanel.setBackground(UIManager.getColor("Panel.background"));
+        centerPanel.add(scrollPane, BorderLayout.NORTH);
+        centerPanel.add(tablePanel, BorderLayout.CENTER);
+        topPanel.add(centerPanel, BorderLayout.CENTER);
 
         mainFrame.add(topPanel, BorderLayout.CENTER);
 
+        // --- Status Bar (shown while grades load) ---
+        loadProgress = new JProgressBar();
+        loadProgress.setIndeterminate(true);
+        loadProgress.setStringPainted(true);
+        loadProgress.setString("Loading grades...");
+        mainFrame.add(loadProgress, BorderLayout.SOUTH);
+
         // --- SET WINDOW SIZE HERE ---
         // We set a preferred size for the main content area (JTextArea wrapper)
         // Note: The JTextArea's constructor (10 rows, 40 columns) affects the preferred size if pack() is used.
@@ -176,72 +356,577 @@ public class grading {
         mainFrame.setLocationRelativeTo(null);
         mainFrame.setVisible(true);
 
-        updateSummary(); // Initial update
+        // Load data on startup, off the EDT
+        loadGradesInBackground();
+    }
+
+    /**
+     * Runs once the main window is on screen: records the time to first frame, then does
+     * in the background what startup put off, i.e. the JMX registration and loading the
+     * chart classes. With -Dgradehelper.startupProbe=true it then prints the time and
+     * exits, for the startup benchmark and the CDS training run.
+     */
+    private static void firstFrameShown() {
+        long millis = ProcessHandle.current().info().startInstant()
+                .map(started -> System.currentTimeMillis() - started.toEpochMilli())
+                .orElse(-1L);
+        Diagnostics.setFirstFrameMillis(millis);
+
+        Future<?> warmUp = BACKGROUND.submit(() -> {
+            // Timers and counters, also visible in Data > Diagnostics
+            Diagnostics.register();
+            ChartWindows.prewarm();
+        });
+        if (Boolean.getBoolean(STARTUP_PROBE_PROPERTY)) {
+            System.out.println("first-frame-ms=" + millis);
+            BACKGROUND.submit(() -> {
+                // Let the warm-up finish so a training run also records the chart classes
+                try {
+                    warmUp.get();
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+                System.exit(0);
+            });
+        }
     }
 
     /**
-     * Shows a dialog with the fixed category weights.
+     * Shows a dialog with the configured weight schemes and which subjects use them.
      */
     private static void showCategoryWeightsInfo() {
-        String info = String.format("Current Grading Categories:\n\nMajor: %.0f%%\nMinor: %.0f%%\n\nThese weights are fixed.",
-                WEIGHT_CONFIG.get("Major"), WEIGHT_CONFIG.get("Minor"));
-        JOptionPane.showMessageDialog(mainFrame, info, "Category Weights Configuration", JOptionPane.INFORMATION_MESSAGE);
-    }
-
-    /**
-     * Loads grade data from the CSV file.
-     */
-    private static void loadGrades() {
-        allGrades.clear();
-        File file = new File(CSV_FILE);
-        if (!file.exists()) return;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            // Skip the header
-            br.readLine();
-
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",", -1);
-                if (parts.length == 6) {
-                    try {
-                        String name = parts[0].trim();
-                        String subject = parts[1].trim();
-                        String category = parts[2].trim();
-                        int score = Integer.parseInt(parts[3].trim());
-                        int outOf = Integer.parseInt(parts[4].trim());
-                        String date = parts[5].trim();
-
-                        GradeItem item = new GradeItem(name, subject, category, score, outOf, date);
-                        allGrades.computeIfAbsent(subject, k -> new ArrayList<>()).add(item);
-                    } catch (NumberFormatException e) {
-                        System.err.println("Skipping malformed grade line: " + line);
+        StringBuilder info = new StringBuilder("Current Grading Schemes:\n");
+        for (WeightScheme scheme : weightConfig.schemes()) {
+            info.append("\n[").append(scheme.name).append("]\n");
+            for (int c = 0; c < scheme.categories.length; c++) {
+                info.append(String.format("%s: %.0f%%", scheme.categories[c], scheme.weights[c]));
+                if (scheme.dropLowest[c] > 0) {
+                    info.append(String.format(" (lowest %d dropped)", scheme.dropLowest[c]));
+                }
+                info.append('\n');
+            }
+        }
+        if (!weightConfig.subjectSchemes().isEmpty()) {
+            info.append("\nSubjects:\n");
+            weightConfig.subjectSchemes().forEach((subject, scheme) ->
+                    info.append(subject).append(" -> ").append(scheme.name).append('\n'));
+        }
+        info.append("\nOther subjects use [").append(weightConfig.defaultScheme.name).append("]. Edit ")
+                .append(WEIGHTS_FILE).append(" and choose Reload Weight Schemes to change them.");
+        JOptionPane.showMessageDialog(mainFrame, info.toString(), "Category Weights Configuration", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Shows operation latencies and load/save counters, refreshed every second while open.
+     * The same numbers are published over JMX as {@value Diagnostics#OBJECT_NAME}.
+     */
+    private static void showDiagnostics() {
+        JDialog dialog = new JDialog(mainFrame, "Diagnostics", false);
+        dialog.setLayout(new BorderLayout(10, 10));
+
+        JTextArea reportArea = new JTextArea(14, 76);
+        reportArea.setEditable(false);
+        reportArea.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        JScrollPane reportScroll = new JScrollPane(reportArea);
+        reportScroll.setBorder(new EmptyBorder(10, 10, 0, 10));
+        Runnable refresh = () -> {
+            reportArea.setText(Diagnostics.report());
+            reportArea.setCaretPosition(0);
+        };
+        refresh.run();
+
+        javax.swing.Timer autoRefresh = new javax.swing.Timer(1000, e -> refresh.run());
+        autoRefresh.start();
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                autoRefresh.stop();
+            }
+        });
+        dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            Diagnostics.reset();
+            refresh.run();
+        });
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(resetButton);
+
+        dialog.add(reportScroll, BorderLayout.CENTER);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+
+        dialog.pack();
+        dialog.setLocationRelativeTo(mainFrame);
+        dialog.setVisible(true);
+    }
+
+    /**
+     * Shows score distributions per subject and category, computed in the background from
+     * a frozen view of allGrades.
+     */
+    private static void showStatistics() {
+        GradeStore.Frozen frozen = allGrades.publish();
+        BACKGROUND.submit(() -> {
+            String text;
+            try {
+                text = GradeStatistics.of(frozen).format();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(mainFrame,
+                        "Error computing statistics: " + e.getMessage(), "Grade Statistics", JOptionPane.ERROR_MESSAGE));
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                JTextArea statsArea = new JTextArea(text, 20, 92);
+                statsArea.setEditable(false);
+                statsArea.setFont(new Font("Monospaced", Font.PLAIN, 13));
+                statsArea.setCaretPosition(0);
+                JScrollPane statsScroll = new JScrollPane(statsArea);
+                JOptionPane.showMessageDialog(mainFrame, statsScroll, "Grade Statistics", JOptionPane.PLAIN_MESSAGE);
+            });
+        });
+    }
+
+    /**
+     * Re-reads the weight schemes in the background and recomputes the subjects they affect.
+     */
+    private static void reloadWeightsInBackground() {
+        BACKGROUND.submit(() -> {
+            try {
+                WeightConfig config = WeightConfig.load(Path.of(WEIGHTS_FILE));
+                SwingUtilities.invokeLater(() -> applyWeightConfig(config));
+            } catch (IOException e) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(mainFrame,
+                        "Error loading weight schemes: " + e.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE));
+            }
+        });
+    }
+
+    /**
+     * Switches to config and recomputes every subject whose rules changed. Call on the EDT.
+     */
+    private static void applyWeightConfig(WeightConfig config) {
+        List<String> changed = config.changedSubjects(weightConfig, Arrays.asList(allGrades.subjectNames()));
+        weightConfig = config;
+        recomputeSummaries(changed);
+        for (String subject : changed) {
+            refreshOpenChart(subject);
+        }
+    }
+
+    /**
+     * Recomputes the named subjects' summaries in parallel off the EDT, from column
+     * snapshots taken now, and refreshes the summary view when done.
+     */
+    private static void recomputeSummaries(List<String> subjects) {
+        if (subjects.isEmpty()) return;
+        GradeStore store = allGrades;
+        GradeStore.Frozen frozen = store.publish();
+        List<GradeStore.SubjectGrades.Columns> columns = new ArrayList<>(subjects.size());
+        List<WeightScheme.Plan> plans = new ArrayList<>(subjects.size());
+        for (String subject : subjects) {
+            columns.add(frozen.subject(subject));
+            plans.add(weightConfig.forSubject(subject).plan(store));
+        }
+
+        recomputing.addAll(subjects);
+
+        BACKGROUND.submit(() -> {
+            List<SubjectSummary> computed;
+            try {
+                computed = SubjectSummary.computeAll(columns, plans);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    // Not left marked, or these subjects would never be recomputed again
+                    if (store == allGrades) subjects.forEach(recomputing::remove);
+                    JOptionPane.showMessageDialog(mainFrame, "Error computing subject summaries: " + e.getMessage(),
+                            "Grade Summary", JOptionPane.ERROR_MESSAGE);
+                });
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (store != allGrades) return;
+                for (SubjectSummary summary : computed) {
+                    summaries.put(summary.subject, summary);
+                    recomputing.remove(summary.subject);
+                }
+                updateSummary();
+                refreshDashboard();
+            });
+        });
+    }
+
+    /**
+     * Opens the all-subjects window; double-clicking a subject there selects it here.
+     */
+    private static void showDashboard() {
+        GradeDashboard.show(mainFrame, subject -> {
+            subjectDropdown.setSelectedItem(subject);
+            mainFrame.toFront();
+        });
+        refreshDashboard();
+    }
+
+    /**
+     * If the all-subjects window is open, shows every cached summary that is still
+     * current and recomputes the rest in the background; each result refreshes the
+     * window again. Subjects whose grades and scheme did not change are not recomputed.
+     * Call on the EDT.
+     */
+    private static void refreshDashboard() {
+        if (!GradeDashboard.isOpen()) return;
+        GradeStore store = allGrades;
+        String[] subjects = store.subjectNames();
+        List<SubjectSummary> current = new ArrayList<>(subjects.length);
+        List<String> stale = new ArrayList<>();
+        int pending = 0;
+        for (String subject : subjects) {
+            SubjectSummary summary = summaries.get(subject);
+            if (summary != null && summary.isCurrent(store.subject(subject), weightConfig.forSubject(subject))) {
+                current.add(summary);
+            } else {
+                pending++;
+                if (!recomputing.contains(subject)) stale.add(subject);
+            }
+        }
+        GradeDashboard.update(current, pending);
+        recomputeSummaries(stale);
+    }
+
+    /**
+     * Everything loadGrades() produced, handed from the loader thread to the EDT.
+     */
+    private static class LoadedGrades {
+        GradeStore store = new GradeStore();
+        GradeJournal journal;
+        WeightConfig weights = WeightConfig.defaults();
+        int replayedRows;
+        boolean snapshotStale;
+        // Bytes of CSV_FILE the store holds; the file watcher reads on from here
+        long csvOffset;
+        // CSV_FILE's modification time (ms) taken before it was read, for the snapshot stamp
+        long csvModified;
+        IOException error;
+        IOException weightsError;
+    }
+
+    /**
+     * Disables editing, loads on the background executor and publishes the result on the EDT.
+     * Also used for a full reload, after the previous journal has been flushed and closed.
+     */
+    private static void loadGradesInBackground() {
+        dataMenu.setEnabled(false);
+        calculateButton.setEnabled(false);
+        loadProgress.setVisible(true);
+
+        GradeJournal previous = journal;
+        String selected = (String) subjectDropdown.getSelectedItem();
+        BACKGROUND.submit(() -> {
+            if (previous != null) previous.close();
+            LoadedGrades loaded = loadGrades();
+            SwingUtilities.invokeLater(() -> {
+                allGrades = loaded.store;
+                journal = loaded.journal;
+                csvMerged = loaded.csvOffset;
+                weightConfig = loaded.weights;
+                summaries.clear();
+                recomputing.clear();
+
+                loadProgress.setVisible(false);
+                dataMenu.setEnabled(true);
+                calculateButton.setEnabled(true);
+                updateSubjectDropdown(selected);
+                updateSummary();
+                recomputeSummaries(Arrays.asList(allGrades.subjectNames()));
+                if (chartsShown) {
+                    for (String subject : ChartWindows.subjects()) {
+                        refreshOpenChart(subject);
                     }
                 }
+
+                if (loaded.weightsError != null) {
+                    JOptionPane.showMessageDialog(mainFrame, "Error loading weight schemes (using defaults): " + loaded.weightsError.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE);
+                }
+                if (loaded.error != null) {
+                    JOptionPane.showMessageDialog(mainFrame, "Error loading grade data: " + loaded.error.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE);
+                } else if (loaded.replayedRows > 0) {
+                    compactInBackground(); // Also rewrites the snapshot
+                } else if (loaded.snapshotStale && Files.exists(Path.of(CSV_FILE))) {
+                    journal.refreshSnapshot(allGrades, loaded.csvOffset, loaded.csvModified).whenComplete((v, err) -> {
+                        if (err != null) System.err.println("Could not write grade snapshot: " + err.getMessage());
+                    });
+                }
+            });
+            // After the publish is queued, so appended rows always reach the new store
+            if (loaded.error == null) watchGradeFile(loaded.csvOffset);
+        });
+    }
+
+    /**
+     * Starts following CSV_FILE from offset (on the first load) or moves the existing
+     * watcher to it. Appended rows are merged on the EDT; a rewritten file reloads everything.
+     */
+    private static void watchGradeFile(long offset) {
+        synchronized (grading.class) {
+            if (fileWatcher == null) {
+                try {
+                    fileWatcher = new GradeFileWatcher(Path.of(CSV_FILE), new GradeFileWatcher.Listener() {
+                        @Override
+                        public void appended(CsvGradeLoader.Parsed rows) {
+                            SwingUtilities.invokeLater(() -> mergeAppendedRows(rows));
+                        }
+
+                        @Override
+                        public void replaced() {
+                            SwingUtilities.invokeLater(grading::reloadChangedFile);
+                        }
+                    });
+                } catch (IOException e) {
+                    System.err.println("Not watching " + CSV_FILE + " for changes: " + e.getMessage());
+                    return;
+                }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(mainFrame, "Error loading grade data: " + e.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE);
         }
+        fileWatcher.baseline(offset);
     }
 
     /**
-     * Saves all grade data to the CSV file.
+     * Reloads after CSV_FILE was rewritten by another program, or once the running import
+     * is done: a reload closes the journal the import is appending to. Call on the EDT.
      */
-    private static void saveGrades() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(CSV_FILE))) {
-            pw.println("Name,Subject,Category,Score,OutOf,Date");
+    private static void reloadChangedFile() {
+        if (importing) {
+            reloadDeferred = true;
+        } else {
+            loadGradesInBackground();
+        }
+    }
+
+    /**
+     * Adds rows another program appended to CSV_FILE. They are already in the file, so
+     * they are not journalled.
+     */
+    private static void mergeAppendedRows(CsvGradeLoader.Parsed rows) {
+        csvMerged += rows.end - rows.start;
+        CsvGradeLoader.LoadResult result = rows.mergeInto(allGrades);
+        if (result.rowsSkipped > 0) {
+            System.err.println("Skipped " + result.rowsSkipped + " malformed grade line(s) appended to " + CSV_FILE);
+        }
+        if (result.rowsLoaded == 0) return;
+
+        List<String> changed = new ArrayList<>(rows.subjects());
+        updateSubjectDropdown((String) subjectDropdown.getSelectedItem());
+        updateSummary();
+        recomputeSummaries(changed);
+        for (String subject : changed) {
+            refreshOpenChart(subject);
+        }
+    }
 
-            for (List<GradeItem> subjectGrades : allGrades.values()) {
-                for (GradeItem item : subjectGrades) {
-                    pw.println(item.toCSV());
+    /**
+     * Loads grade data from the binary snapshot, or from the CSV file using the
+     * parallel chunked loader when the snapshot is missing or stale, then replays any
+     * journalled grades that were not yet compacted into it. Safe to call off the EDT.
+     */
+    private static LoadedGrades loadGrades() {
+        long start = System.nanoTime();
+        LoadedGrades loaded = new LoadedGrades();
+        Path file = Path.of(CSV_FILE);
+        loaded.journal = new GradeJournal(file);
+
+        try {
+            loaded.weights = WeightConfig.load(Path.of(WEIGHTS_FILE));
+        } catch (IOException e) {
+            // Grades still load; every subject falls back to the default scheme
+            System.err.println("Error loading weight schemes: " + e.getMessage());
+            loaded.weightsError = e;
+        }
+
+        try {
+            loaded.journal.recover();
+            // Prefer the binary snapshot; the CSV is measured first so it is only used if it matches at this size
+            long csvSize = Files.exists(file) ? Files.size(file) : 0;
+            GradeStore snapshot = GradeSnapshot.load(file);
+            loaded.snapshotStale = snapshot == null;
+            if (snapshot != null) {
+                loaded.store = snapshot;
+                loaded.csvOffset = csvSize;
+                Diagnostics.recordRows(snapshot.rowCount(), 0);
+            } else if (Files.exists(file)) {
+                // Before reading: a later append changes the time, so the snapshot cannot claim it
+                loaded.csvModified = Files.getLastModifiedTime(file).toMillis();
+                CsvGradeLoader.LoadResult result = CsvGradeLoader.load(file);
+                loaded.store = result.store;
+                loaded.csvOffset = result.end;
+                if (result.rowsSkipped > 0) {
+                    System.err.println("Skipped " + result.rowsSkipped + " malformed grade line(s) in " + CSV_FILE);
                 }
             }
-            JOptionPane.showMessageDialog(mainFrame, "Grade data saved successfully to " + CSV_FILE, "Save Success", JOptionPane.INFORMATION_MESSAGE);
+            loaded.replayedRows = loaded.journal.replay(loaded.store);
+            loaded.store.indexDates();
+            Diagnostics.setStoreBytes(loaded.store.estimatedBytes());
         } catch (IOException e) {
             e.printStackTrace();
-            JOptionPane.showMessageDialog(mainFrame, "Error saving grade data: " + e.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE);
+            loaded.error = e;
         }
+        Diagnostics.LOAD.record(start);
+        return loaded;
+    }
+
+    /**
+     * Saves all grade data to the CSV file: the journal's compactor appends the rows that
+     * are not in it yet; the result is reported back on the EDT.
+     */
+    private static void saveGrades() {
+        compact().whenComplete((v, err) -> SwingUtilities.invokeLater(() -> {
+            if (err == null) {
+                JOptionPane.showMessageDialog(mainFrame, "Grade data saved successfully to " + CSV_FILE, "Save Success", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                showSaveError(err);
+            }
+        }));
+    }
+
+    /**
+     * Appends the newest row of the subject to the journal, compacting when it has grown large.
+     */
+    private static void journalLastGrade(GradeStore.SubjectGrades subjectGrades) {
+        StringBuilder row = new StringBuilder(64);
+        allGrades.appendCsvRow(row, subjectGrades, subjectGrades.size() - 1);
+        journal.append(row.toString()).whenComplete((v, err) -> {
+            if (err != null) SwingUtilities.invokeLater(() -> showSaveError(err));
+        });
+        if (journal.needsCompaction()) {
+            compactInBackground();
+        }
+    }
+
+    /**
+     * Asks for CSV files and imports them through {@link GradeImporter}: files are read and
+     * validated on background threads and merged into allGrades on the EDT one batch at a
+     * time. Rejected lines are written to import-report.csv next to the gradebook.
+     */
+    private static void importGrades() {
+        JFileChooser chooser = new JFileChooser(Path.of("").toAbsolutePath().toFile());
+        chooser.setDialogTitle("Import Grades");
+        chooser.setMultiSelectionEnabled(true);
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        if (chooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION) return;
+        List<Path> files = new ArrayList<>();
+        for (File f : chooser.getSelectedFiles()) {
+            files.add(f.toPath());
+        }
+        if (files.isEmpty()) return;
+
+        dataMenu.setEnabled(false);
+        calculateButton.setEnabled(false);
+        loadProgress.setVisible(true);
+        importing = true;
+
+        // Taken together: rows merged into store are journalled to its journal
+        GradeStore store = allGrades;
+        GradeJournal importJournal = journal;
+        GradeImporter importer = new GradeImporter(weightConfig, Runtime.getRuntime().availableProcessors());
+        GradeImporter.Merger merger = new GradeImporter.Merger(store);
+        Path reportFile = Path.of(CSV_FILE).toAbsolutePath().resolveSibling("import-report.csv");
+        BACKGROUND.submit(() -> {
+            String message;
+            boolean failed = false;
+            // First failed journal append, reported once when the import is done
+            AtomicReference<Throwable> journalError = new AtomicReference<>();
+            AtomicReference<CompletableFuture<Void>> lastAppend = new AtomicReference<>(CompletableFuture.completedFuture(null));
+            try (GradeImporter.Report report = new GradeImporter.Report(reportFile)) {
+                StringBuilder row = new StringBuilder(64);
+                importer.importFiles(files, report, batch -> SwingUtilities.invokeAndWait(() -> {
+                    if (store != allGrades) {
+                        throw new IllegalStateException("the gradebook was reloaded during the import");
+                    }
+                    merger.merge(batch, report, grades -> {
+                        // Journalled without the per-row compaction check; one compaction follows
+                        row.setLength(0);
+                        store.appendCsvRow(row, grades, grades.size() - 1);
+                        lastAppend.set(importJournal.append(row.toString()).whenComplete((v, err) -> {
+                            if (err != null) journalError.compareAndSet(null, err);
+                        }));
+                    });
+                    store.publish();
+                }));
+                // Appends complete in order, so once the last is done every error is known
+                lastAppend.get().exceptionally(err -> null).join();
+                Diagnostics.recordRows(report.imported.sum(), report.rejected.sum());
+                message = report.summary();
+            } catch (Exception e) {
+                Throwable cause = e instanceof InvocationTargetException && e.getCause() != null ? e.getCause() : e;
+                cause.printStackTrace();
+                message = "Import failed: " + cause.getMessage();
+                failed = true;
+            }
+
+            String shown = message;
+            boolean error = failed;
+            SwingUtilities.invokeLater(() -> {
+                loadProgress.setVisible(false);
+                dataMenu.setEnabled(true);
+                calculateButton.setEnabled(true);
+                importing = false;
+
+                if (journalError.get() != null) showSaveError(journalError.get());
+                List<String> changed = new ArrayList<>(merger.changedSubjects());
+                if (reloadDeferred) {
+                    // CSV_FILE was rewritten meanwhile: reload it and replay the imported rows from
+                    // the journal instead of compacting the store over the new file
+                    reloadDeferred = false;
+                    loadGradesInBackground();
+                } else if (!changed.isEmpty()) {
+                    compactInBackground();
+                    updateSubjectDropdown((String) subjectDropdown.getSelectedItem());
+                    updateSummary();
+                    recomputeSummaries(changed);
+                    for (String subject : changed) {
+                        refreshOpenChart(subject);
+                    }
+                }
+                JOptionPane.showMessageDialog(mainFrame, shown, "Import Grades",
+                        error ? JOptionPane.ERROR_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+            });
+        });
+    }
+
+    private static void compactInBackground() {
+        compact().whenComplete((v, err) -> {
+            if (err != null) SwingUtilities.invokeLater(() -> showSaveError(err));
+        });
+    }
+
+    /**
+     * Starts a compaction with the file watcher paused, so the rows the journal appends to
+     * CSV_FILE are not read back as another program's. Call on the EDT.
+     */
+    private static CompletableFuture<GradeJournal.Folded> compact() {
+        Diagnostics.setStoreBytes(allGrades.estimatedBytes());
+        GradeFileWatcher watcher = fileWatcher;
+        if (watcher != null) watcher.pause();
+        return journal.compact(allGrades, csvMerged).whenComplete((folded, err) -> {
+            if (err == null) {
+                // Queued before the watcher resumes and reports rows past the folded ones
+                SwingUtilities.invokeLater(() -> csvMerged += folded.end - folded.start);
+            }
+            if (watcher != null) {
+                if (err == null) {
+                    watcher.resume(folded.start, folded.end);
+                } else {
+                    watcher.resume(0, 0);
+                }
+            }
+        });
+    }
+
+    private static void showSaveError(Throwable err) {
+        Throwable cause = err.getCause() != null ? err.getCause() : err;
+        cause.printStackTrace();
+        JOptionPane.showMessageDialog(mainFrame, "Error saving grade data: " + cause.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE);
     }
 
     /**
@@ -255,7 +940,7 @@ public class grading {
         formPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
 
         // Get list of existing subjects for the dropdown
-        String[] subjects = allGrades.keySet().toArray(new String[0]);
+        String[] subjects = allGrades.subjectNames();
         String[] subjectsWithNew = new String[subjects.length + 1];
         subjectsWithNew[0] = "New Subject...";
         System.arraycopy(subjects, 0, subjectsWithNew, 1, subjects.length);
@@ -274,7 +959,7 @@ public class grading {
         JTextField subjectNewField = new JTextField(15);
         subjectNewField.setVisible(isNewSubjectDefault); // Set initial visibility correctly
 
-        JComboBox<String> categoryCombo = new JComboBox<>(CATEGORIES);
+        JComboBox<String> categoryCombo = new JComboBox<>(weightConfig.allCategories());
         JTextField scoreField = new JTextField(15);
         JTextField outOfField = new JTextField(15);
         JTextField dateField = new JTextField(LocalDate.now().toString(), 15);
@@ -358,13 +1043,23 @@ public class grading {
                     return;
                 }
 
-                GradeItem newItem = new GradeItem(name, subject, category, score, outOf, date);
-                allGrades.computeIfAbsent(subject, k -> new ArrayList<>()).add(newItem);
+                int epochDay;
+                try {
+                    epochDay = (int) LocalDate.parse(date).toEpochDay();
+                } catch (DateTimeParseException ex) {
+                    JOptionPane.showMessageDialog(dialog, "Date must be in YYYY-MM-DD format.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                allGrades.add(name, subject, category, score, outOf, epochDay);
+                journalLastGrade(allGrades.subject(subject));
+                allGrades.publish();
 
-                // Update the subject dropdown and the summary
+                // Update the subject dropdown, the summary and the subject's chart if it is open
                 updateSubjectDropdown(subject);
                 updateSummary();
-                saveGrades();
+                refreshOpenChart(subject);
+                refreshDashboard();
 
                 dialog.dispose();
             } catch (NumberFormatException ex) {
@@ -387,6 +1082,110 @@ public class grading {
         dialog.setVisible(true);
     }
 
+    /**
+     * Shows a dialog answering "what score do I need on the next assignment to get a
+     * given letter", for the selected subject or every subject at once.
+     */
+    private static void showTargetDialog() {
+        JDialog dialog = new JDialog(mainFrame, "What Do I Need?", true);
+        dialog.setLayout(new BorderLayout(10, 10));
+
+        JPanel formPanel = new JPanel(new GridLayout(4, 2, 5, 5));
+        formPanel.setBorder(new EmptyBorder(10, 10, 0, 10));
+
+        String[] subjects = allGrades.subjectNames();
+        String[] subjectsWithAll = new String[subjects.length + 1];
+        subjectsWithAll[0] = "All Subjects";
+        System.arraycopy(subjects, 0, subjectsWithAll, 1, subjects.length);
+
+        JComboBox<String> subjectCombo = new JComboBox<>(subjectsWithAll);
+        if (subjectDropdown.getSelectedItem() != null) {
+            subjectCombo.setSelectedItem(subjectDropdown.getSelectedItem());
+        }
+        JComboBox<String> categoryCombo = new JComboBox<>(weightConfig.allCategories());
+        JTextField outOfField = new JTextField("100", 15);
+        // Every letter but F
+        JComboBox<String> letterCombo = new JComboBox<>(Arrays.copyOf(GRADE_LETTERS, GRADE_THRESHOLDS.length));
+        letterCombo.setSelectedItem("A-");
+
+        formPanel.add(new JLabel("Subject:"));
+        formPanel.add(subjectCombo);
+        formPanel.add(new JLabel("Next Assignment Category:"));
+        formPanel.add(categoryCombo);
+        formPanel.add(new JLabel("Out Of:"));
+        formPanel.add(outOfField);
+        formPanel.add(new JLabel("Target Letter Grade:"));
+        formPanel.add(letterCombo);
+
+        JTextArea answerArea = new JTextArea(10, 52);
+        answerArea.setEditable(false);
+        answerArea.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        JScrollPane answerScroll = new JScrollPane(answerArea);
+        answerScroll.setBorder(new EmptyBorder(0, 10, 0, 10));
+
+        JButton solveButton = new JButton("Calculate");
+        solveButton.addActionListener(e -> {
+            int outOf;
+            try {
+                outOf = Integer.parseInt(outOfField.getText().trim());
+            } catch (NumberFormatException ex) {
+                outOf = 0;
+            }
+            if (outOf <= 0) {
+                JOptionPane.showMessageDialog(dialog, "'Out Of' must be a positive integer.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            String category = (String) categoryCombo.getSelectedItem();
+            String letter = (String) letterCombo.getSelectedItem();
+            String chosen = (String) subjectCombo.getSelectedItem();
+            List<String> targets = subjectCombo.getSelectedIndex() == 0 ? Arrays.asList(subjects) : List.of(chosen);
+
+            // Summaries are cached, so this is O(categories) per subject plus O(1) per answer
+            List<SubjectSummary> current = new ArrayList<>(targets.size());
+            TargetSolver.Query[] queries = new TargetSolver.Query[targets.size()];
+            for (int i = 0; i < targets.size(); i++) {
+                current.add(currentSummary(allGrades, allGrades.subject(targets.get(i))));
+                queries[i] = new TargetSolver.Query(targets.get(i), category, outOf, letter);
+            }
+            answerArea.setText(formatTargets(TargetSolver.solveAll(current, queries)));
+            answerArea.setCaretPosition(0);
+        });
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(solveButton);
+
+        dialog.add(formPanel, BorderLayout.NORTH);
+        dialog.add(answerScroll, BorderLayout.CENTER);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+
+        dialog.pack();
+        dialog.setLocationRelativeTo(mainFrame);
+        dialog.setVisible(true);
+    }
+
+    private static String formatTargets(TargetSolver.Answer[] answers) {
+        if (answers.length == 0) return "No subjects with grades yet.\n";
+        StringBuilder sb = new StringBuilder();
+        for (TargetSolver.Answer answer : answers) {
+            TargetSolver.Query q = answer.query;
+            sb.append(String.format("%-20s ", q.subject));
+            if (answer.error != null) {
+                sb.append(answer.error);
+            } else if (!answer.reachable) {
+                sb.append(String.format("Not reachable with one %s (best: %.2f%%, %s)",
+                        q.category, answer.resultingGrade, computeGrade((int) Math.round(answer.resultingGrade))));
+            } else if (answer.requiredScore == 0) {
+                sb.append(String.format("%s already secured (any score keeps %.2f%% or more)", q.letter, answer.resultingGrade));
+            } else {
+                sb.append(String.format("Need %d/%d on the next %s for %s (%.2f%%)",
+                        answer.requiredScore, q.outOf, q.category, q.letter, answer.resultingGrade));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
     /**
      * Updates the subject dropdown list if a new subject was added.
      */
@@ -394,7 +1193,7 @@ public class grading {
         // Clear and rebuild the dropdown to ensure correct ordering and inclusion of new subjects
         subjectDropdown.removeAllItems();
 
-        String[] subjects = allGrades.keySet().toArray(new String[0]);
+        String[] subjects = allGrades.subjectNames();
         for (String subject : subjects) {
             subjectDropdown.addItem(subject);
         }
@@ -407,91 +1206,196 @@ public class grading {
         }
     }
 
+    /**
+     * Narrows the assignment table to rows whose name or category contains the filter text.
+     */
+    private static void applyTableFilter() {
+        String needle = filterField.getText().trim();
+        if (needle.isEmpty()) {
+            gradeSorter.setRowFilter(null);
+            return;
+        }
+        gradeSorter.setRowFilter(new RowFilter<GradeTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends GradeTableModel, ? extends Integer> entry) {
+                return entry.getModel().matches(entry.getIdentifier(), needle);
+            }
+        });
+    }
+
     /**
      * Recalculates and displays the summary for the currently selected subject.
+     * The final grade comes from the running aggregates on the EDT and the assignment
+     * table is pointed at the subject's columns; the summary text is formatted on the
+     * background executor.
+     * A newer request cancels the pending one, so rapid subject changes only compute
+     * the latest selection.
      */
     private static void updateSummary() {
+        long start = System.nanoTime();
         String selectedSubject = (String) subjectDropdown.getSelectedItem();
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(String.format("====================================================\n"));
-        sb.append(String.format("           GRADE SUMMARY FOR: %s\n", selectedSubject != null ? selectedSubject.toUpperCase() : "N/A"));
-        sb.append(String.format("====================================================\n"));
-
-        if (selectedSubject == null || !allGrades.containsKey(selectedSubject)) {
-            sb.append("\nNo grades entered yet for this subject.\n");
-            resultArea.setText(sb.toString());
-            return;
+        GradeStore store = allGrades;
+        GradeStore.SubjectGrades subjectGrades = selectedSubject == null ? null : store.subject(selectedSubject);
+
+        // Capture what the formatter needs while we are still on the EDT
+        int fromDay = dateFieldValue(fromDateField, Integer.MIN_VALUE);
+        int toDay = dateFieldValue(toDateField, Integer.MAX_VALUE);
+        int lastCount = countFieldValue(lastCountField);
+        boolean ranged = fromDay != Integer.MIN_VALUE || toDay != Integer.MAX_VALUE || lastCount > 0;
+        String range = ranged ? dateRangeLabel(fromDay, toDay, lastCount) : null;
+
+        SubjectSummary summary = null;
+        if (subjectGrades == null) {
+            gradeTableModel.setRows(store, null);
+        } else if (!ranged) {
+            summary = currentSummary(store, subjectGrades);
+            gradeTableModel.setRows(store, subjectGrades.columns());
+        } else {
+            // Binary search in the subject's date index, then aggregate just those rows
+            int[] rows = dateFilteredRows(subjectGrades, fromDay, toDay, lastCount);
+            GradeStore.SubjectGrades.Columns columns = subjectGrades.columns();
+            if (rows.length > 0) {
+                summary = SubjectSummary.of(columns, weightConfig.forSubject(selectedSubject).plan(store), rows);
+            }
+            gradeTableModel.setRows(store, columns, rows);
         }
+        SubjectSummary captured = summary;
 
-        List<GradeItem> subjectGrades = allGrades.get(selectedSubject);
-
-        // Tracking variables for category-based calculation
-        Map<String, Double> categoryScoreSums = new TreeMap<>(); // Map<Category, SumOfPercentages>
-        Map<String, Double> categoryWeightCounts = new TreeMap<>(); // Map<Category, NumberOfAssignments>
+        long generation = ++summaryGeneration;
+        if (pendingSummary != null) {
+            pendingSummary.cancel(true);
+        }
+        pendingSummary = BACKGROUND.submit(() -> {
+            String text = formatSummary(selectedSubject, range, captured);
+            SwingUtilities.invokeLater(() -> {
+                if (generation == summaryGeneration) {
+                    resultArea.setText(text);
+                    resultArea.setCaretPosition(0);
+                    // From the request to the text on screen; superseded requests are not counted
+                    Diagnostics.SUMMARY.record(start);
+                }
+            });
+        });
+    }
 
-        // Initialize trackers
-        for (String cat : CATEGORIES) {
-            categoryScoreSums.put(cat, 0.0);
-            categoryWeightCounts.put(cat, 0.0);
+    /**
+     * The subject's summary under its weight scheme, recomputed only if the subject or
+     * its scheme changed since the cached one. Call on the EDT.
+     */
+    private static SubjectSummary currentSummary(GradeStore store, GradeStore.SubjectGrades subjectGrades) {
+        WeightScheme scheme = weightConfig.forSubject(subjectGrades.subject);
+        SubjectSummary summary = summaries.get(subjectGrades.subject);
+        if (summary == null || !summary.isCurrent(subjectGrades, scheme)) {
+            summary = SubjectSummary.of(subjectGrades, scheme.plan(store));
+            summaries.put(subjectGrades.subject, summary);
         }
+        return summary;
+    }
 
-        // --- Display Individual Assignments ---
-        sb.append(String.format("%-30s | %-10s | %-10s | %-10s\n",
-                "Assignment Name", "Category", "Score", "Percentage"));
-        sb.append(String.format("----------------------------------------------------\n"));
+    /**
+     * The subject's rows in the date filter, in date order: all rows up to toDay when
+     * there is no start, then only the lastCount most recent (if lastCount > 0).
+     */
+    private static int[] dateFilteredRows(GradeStore.SubjectGrades grades, int fromDay, int toDay, int lastCount) {
+        if (fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE) {
+            return grades.lastRows(lastCount);
+        }
+        int[] rows = fromDay == Integer.MIN_VALUE ? grades.rowsAsOf(toDay) : grades.rowsBetween(fromDay, toDay);
+        if (lastCount > 0 && rows.length > lastCount) {
+            rows = Arrays.copyOfRange(rows, rows.length - lastCount, rows.length);
+        }
+        return rows;
+    }
 
-        for (GradeItem item : subjectGrades) {
-            double percent = ((double) item.score / item.outOf); // e.g., 0.95 (decimal)
+    /**
+     * The positive count typed into field, or 0 if it is empty. Anything else is shown
+     * in red and treated as empty.
+     */
+    private static int countFieldValue(JTextField field) {
+        String text = field.getText().trim();
+        field.setForeground(Color.BLACK);
+        if (text.isEmpty()) return 0;
+        try {
+            int count = Integer.parseInt(text);
+            if (count > 0) return count;
+        } catch (NumberFormatException e) {
+            // Shown in red below
+        }
+        field.setForeground(Color.RED);
+        return 0;
+    }
 
-            // Tally for category average
-            categoryScoreSums.put(item.category, categoryScoreSums.get(item.category) + percent);
-            categoryWeightCounts.put(item.category, categoryWeightCounts.get(item.category) + 1.0);
+    /**
+     * The epoch day typed into a date filter field, or blankValue if it is empty.
+     * An unparseable date is shown in red and treated as empty.
+     */
+    private static int dateFieldValue(JTextField field, int blankValue) {
+        String text = field.getText().trim();
+        field.setForeground(Color.BLACK);
+        if (text.isEmpty()) return blankValue;
+        try {
+            return (int) LocalDate.parse(text).toEpochDay();
+        } catch (DateTimeParseException e) {
+            field.setForeground(Color.RED);
+            return blankValue;
+        }
+    }
 
-            sb.append(String.format("%-30s | %-10s | %d/%-5d | %-10.2f\n",
-                    item.name,
-                    item.category,
-                    item.score,
-                    item.outOf,
-                    percent * 100)); // Display percentage
+    private static String dateRangeLabel(int fromDay, int toDay, int lastCount) {
+        String dates;
+        if (fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE) {
+            dates = null;
+        } else if (fromDay == Integer.MIN_VALUE) {
+            dates = "up to " + GradeStore.isoDate(toDay);
+        } else if (toDay == Integer.MAX_VALUE) {
+            dates = "from " + GradeStore.isoDate(fromDay);
+        } else {
+            dates = GradeStore.isoDate(fromDay) + " to " + GradeStore.isoDate(toDay);
         }
+        if (lastCount == 0) return dates;
+        String last = "last " + lastCount + " grade" + (lastCount == 1 ? "" : "s");
+        return dates == null ? last : last + ", " + dates;
+    }
 
-        // --- Calculate Final Grade using Category Averages ---
-        double finalWeightedGrade = 0.0;
-        double totalCategoryWeightUsed = 0.0;
+    /**
+     * Builds the summary header text. Runs off the EDT and only reads the captured summary;
+     * also the text of each exported report card.
+     */
+    static String formatSummary(String selectedSubject, String range, SubjectSummary summary) {
+        StringBuilder sb = new StringBuilder();
 
         sb.append(String.format("====================================================\n"));
-        sb.append(String.format("Category Breakdown:\n"));
-
-        for (String cat : CATEGORIES) {
-            double categoryWeight = WEIGHT_CONFIG.get(cat);
-            double assignmentCount = categoryWeightCounts.get(cat);
+        sb.append(String.format("           GRADE SUMMARY FOR: %s\n", selectedSubject != null ? selectedSubject.toUpperCase() : "N/A"));
+        if (range != null) {
+            sb.append(String.format("           DATES: %s\n", range));
+        }
+        sb.append(String.format("====================================================\n"));
 
-            if (assignmentCount > 0) {
-                // Calculate average percentage score for this category
-                double categoryAvgPercent = categoryScoreSums.get(cat) / assignmentCount;
+        if (summary == null) {
+            sb.append(range == null ? "\nNo grades entered yet for this subject.\n" : "\nNo grades in this date range.\n");
+            return sb.toString();
+        }
 
-                // Score contribution: CategoryAvg * CategoryWeight (e.g., 0.95 * 60)
-                double contribution = categoryAvgPercent * categoryWeight;
-                finalWeightedGrade += contribution;
-                totalCategoryWeightUsed += categoryWeight;
+        // --- Category Breakdown ---
+        sb.append(String.format("Category Breakdown:\n"));
 
-                sb.append(String.format("  %-10s (%.0f%%): Average %.2f%%, Contribution %.2f\n",
-                        cat, categoryWeight, categoryAvgPercent * 100, contribution));
+        for (int c = 0; c < summary.categories.length; c++) {
+            if (summary.counts[c] > 0) {
+                sb.append(String.format("  %-10s (%.0f%%): Average %.2f%%, Contribution %.2f",
+                        summary.categories[c], summary.weights[c], summary.averages[c] * 100, summary.contributions[c]));
+                if (summary.dropped[c] > 0) {
+                    sb.append(String.format(" (lowest %d dropped)", summary.dropped[c]));
+                }
+                sb.append('\n');
             } else {
                 sb.append(String.format("  %-10s (%.0f%%): No grades yet.\n",
-                        cat, categoryWeight));
+                        summary.categories[c], summary.weights[c]));
             }
         }
 
-        // Final grade scaled to 100% based on categories with assignments
-        double scaledFinalGrade = 0.0;
-
-        if (totalCategoryWeightUsed > 0) {
-            scaledFinalGrade = (finalWeightedGrade / totalCategoryWeightUsed) * 100.0;
-        }
-
-        String letterGrade = computeGrade((int) Math.round(scaledFinalGrade));
+        double totalCategoryWeightUsed = summary.totalCategoryWeightUsed;
+        double scaledFinalGrade = summary.finalGrade;
+        String letterGrade = summary.letterGrade;
 
         sb.append(String.format("====================================================\n"));
         sb.append(String.format("Total Category Weight Used: %.2f%%\n", totalCategoryWeightUsed));
@@ -505,136 +1409,71 @@ public class grading {
             sb.append(String.format("The 'Final Grade' above is scaled to 100%% based on categories with entered grades.\n"));
         }
 
-        resultArea.setText(sb.toString());
+        return sb.toString();
     }
 
     // ---------------- Charting ----------------
 
+    // Set on the first "View Progress Chart". Until then there are no chart windows and
+    // ChartWindows (with all of JFreeChart) need not be loaded to find that out.
+    private static boolean chartsShown;
+
     /**
      * Shows a line chart tracking grade progress over time.
      */
     private static void showChart() {
         String selectedSubject = (String) subjectDropdown.getSelectedItem();
-        if (selectedSubject == null || !allGrades.containsKey(selectedSubject)) {
+        if (selectedSubject == null || !allGrades.hasSubject(selectedSubject)) {
             JOptionPane.showMessageDialog(mainFrame, "No grades available to chart for this subject.", "Chart Error", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
-        List<GradeItem> subjectGrades = allGrades.get(selectedSubject);
-        // Sort grades by date for chronological progress
-        subjectGrades.sort(Comparator.comparing(item -> LocalDate.parse(item.date)));
-
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-
-        for (int i = 0; i < subjectGrades.size(); i++) {
-            GradeItem item = subjectGrades.get(i);
-            // Calculate actual percentage score for the assignment
-            double scorePercent = ((double) item.score / item.outOf) * 100.0;
-
-            // Add to dataset: Value, Series (Grade), Category (Assignment Name + Date)
-            dataset.addValue(scorePercent, "Assignment Score", item.name + " (" + item.date + ")");
-        }
-
-        // Create the chart
-        JFreeChart chart = ChartFactory.createLineChart(
-                "Grade Progress: " + selectedSubject, // Chart title
-                "Assignment",                          // X-Axis label
-                "Score Percentage (%)",                // Y-Axis label
-                dataset,                               // Data
-                PlotOrientation.VERTICAL,
-                true,                                  // Include legend
-                true,                                  // Tooltips
-                false                                  // URLs
-        );
-
-        // Create and show the chart window
-        JFrame chartFrame = new JFrame("Progress Chart: " + selectedSubject);
-        chartFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-
-        ChartPanel chartPanel = new ChartPanel(chart);
-
-        // Set a preferred size for the chart panel to determine window size
-        chartPanel.setPreferredSize(new Dimension(1000, 700)); // Increased chart size for better viewing
-
-        chartFrame.setContentPane(chartPanel);
-
-        // Apply single-theme styling to chart
-        applyChartStyling(chart);
-
-        chartFrame.pack(); // Use pack() for chart window to respect preferred size
-        chartFrame.setLocationRelativeTo(mainFrame);
-        chartFrame.setVisible(true);
+        long start = System.nanoTime();
+        chartsShown = true;
+        ChartWindows.show(allGrades, weightConfig, selectedSubject, mainFrame);
+        Diagnostics.CHART.record(start);
     }
 
     /**
-     * Helper to apply consistent Light Mode styling to chart elements.
+     * Updates the subject's chart if its window is open.
      */
-    private static void applyChartStyling(JFreeChart chart) {
-        CategoryPlot plot = chart.getCategoryPlot();
-
-        Color bg = UIManager.getColor("control"); // Light background
-        Color fg = Color.BLACK; // Black text
-
-        chart.setBackgroundPaint(bg);
-        chart.getTitle().setPaint(fg);
-        chart.getLegend().setBackgroundPaint(bg);
-        chart.getLegend().setItemPaint(fg);
-
-        plot.setBackgroundPaint(Color.LIGHT_GRAY); // Light gray plot background for contrast
-        plot.setDomainGridlinePaint(Color.WHITE);
-        plot.setRangeGridlinePaint(Color.WHITE);
-
-        plot.getDomainAxis().setTickLabelPaint(fg);
-        plot.getDomainAxis().setLabelPaint(fg);
-        plot.getRangeAxis().setTickLabelPaint(fg);
-        plot.getRangeAxis().setLabelPaint(fg);
-
-        LineAndShapeRenderer renderer = (LineAndShapeRenderer) plot.getRenderer();
+    private static void refreshOpenChart(String subject) {
+        if (chartsShown && allGrades.hasSubject(subject)) {
+            ChartWindows.refreshIfOpen(allGrades, weightConfig, subject);
+        }
+    }
 
-        // Custom color for the line (Blue)
-        renderer.setSeriesPaint(0, Color.BLUE);
-        renderer.setSeriesStroke(0, new BasicStroke(3.0f));
-        renderer.setSeriesShapesVisible(0, true);
+    // ---------------- Grade Calculation ----------------
 
-        // Set fixed range for Y-axis (0-100)
-        NumberAxis rangeAxis = (NumberAxis) plot.getRangeAxis();
-        rangeAxis.setRange(0.0, 100.0);
-        rangeAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+    // Lowest rounded mark for each letter, best first; anything below the last is an F
+    static final int[] GRADE_THRESHOLDS = {97, 93, 90, 87, 83, 80, 77, 73, 70, 67, 63, 60};
+    static final String[] GRADE_LETTERS = {"A+", "A", "A-", "B+", "B", "B-", "C+", "C", "C-", "D+", "D", "D-", "F"};
+    // Grade points for each letter on the unweighted 4.0 scale, indexed like GRADE_LETTERS
+    static final double[] GRADE_POINTS = {4.0, 4.0, 3.7, 3.3, 3.0, 2.7, 2.3, 2.0, 1.7, 1.3, 1.0, 0.7, 0.0};
 
-        // Add 90% and 80% markers
-        plot.clearRangeMarkers();
-        addGradeMarker(plot, 90.0, Color.GREEN.darker(), "A-Line");
-        addGradeMarker(plot, 80.0, Color.ORANGE.darker(), "B-Line");
+    static String computeGrade(int mark) {
+        return GRADE_LETTERS[gradeIndex(mark)];
     }
 
     /**
-     * Helper to add a horizontal line marker to the chart plot.
+     * Index into GRADE_LETTERS of the letter a rounded mark earns.
      */
-    private static void addGradeMarker(CategoryPlot plot, double value, Color color, String label) {
-        ValueMarker marker = new ValueMarker(value);
-        marker.setPaint(color);
-        marker.setStroke(new BasicStroke(1.5f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, new float[] {10.0f}, 0.0f));
-        marker.setLabel(label);
-        marker.setLabelAnchor(RectangleAnchor.TOP_LEFT);
-        marker.setLabelTextAnchor(TextAnchor.TOP_RIGHT);
-        marker.setLabelPaint(Color.BLACK); // Marker labels are black
-        plot.addRangeMarker(marker);
+    static int gradeIndex(int mark) {
+        for (int i = 0; i < GRADE_THRESHOLDS.length; i++) {
+            if (mark >= GRADE_THRESHOLDS[i]) return i;
+        }
+        return GRADE_LETTERS.length - 1;
     }
 
-    // ---------------- Grade Calculation ----------------
-    private static String computeGrade(int mark) {
-        if (mark >= 97) return "A+";
-        else if (mark >= 93) return "A";
-        else if (mark >= 90) return "A-";
-        else if (mark >= 87) return "B+";
-        else if (mark >= 83) return "B";
-        else if (mark >= 80) return "B-";
-        else if (mark >= 77) return "C+";
-        else if (mark >= 73) return "C";
-        else if (mark >= 70) return "C-";
-        else if (mark >= 67) return "D+";
-        else if (mark >= 63) return "D";
-        else if (mark >= 60) return "D-";
-        else return "F";
+    /**
+     * Lowest rounded mark that earns letter, or -1 if it is not a letter grade.
+     */
+    static int gradeThreshold(String letter) {
+        for (int i = 0; i < GRADE_LETTERS.length; i++) {
+            if (GRADE_LETTERS[i].equals(letter)) {
+                return i < GRADE_THRESHOLDS.length ? GRADE_THRESHOLDS[i] : 0;
+            }
+        }
+        return -1;
     }
 }